@@ -0,0 +1,249 @@
+/*
+ * Class that evaluates a set of AlertRules against the samples of many
+ * stations (ids 0 .. stations-1), e.g. a Simulation fleet:
+ *
+ *      AlertEngine engine = new AlertEngine(fleet.length, rules, listener) ;
+ *      for( WeatherStation ws : fleet ) {
+ *          ws.addObserver(engine) ;
+ *      }
+ *
+ * The rules are compiled into flat arrays when the engine is built. Each
+ * rule is normalised so that its alert is raised when a signed value
+ * (the level, or the rate per hour, negated for BELOW and FALLING rules)
+ * goes above the raise level, and cleared when it goes below the clear
+ * level. The state of each (rule, station) pair is kept in primitive
+ * arrays indexed by station * rules + rule, so the state a sample touches
+ * is contiguous:
+ *
+ *      whether the alert is raised,
+ *      since when the raise condition has held (for durations),
+ *      for rates, a small ring of checkpoints (time, value) spread over
+ *      the rule's window, the oldest giving the rate over the window.
+ *
+ * So evaluating a sample is one pass over the rules with no allocation
+ * and no lookups, whatever the number of stations.
+ *
+ * NOTE: The samples of one station must be fed by one thread at a time
+ *       (as a station's ticks are); different stations may be fed
+ *       concurrently. The listener is called on the feeding thread.
+ */
+import java.util.Arrays ;
+import java.util.Observable ;
+import java.util.Observer ;
+
+public class AlertEngine implements Observer {
+    private static final int CHECKPOINTS = 8 ;  // per rate window
+    private static final long NONE = Long.MIN_VALUE ;
+
+    // the values a sample gives, which each rule's Topic is mapped to
+    private static final int KELVIN = 0 ;
+    private static final int CELSIUS = 1 ;
+    private static final int FAHRENHEIT = 2 ;
+    private static final int INCHES = 3 ;
+    private static final int MILLIBARS = 4 ;
+
+    private final AlertRule[] rules ;
+    private final AlertListener listener ;
+    private final int stations ;
+    private final int rates ;           // number of rate rules
+
+    // compiled rules
+    private final int[] value ;         // value compared, KELVIN .. MILLIBARS
+    private final boolean[] rate ;      // rate rule, else level rule
+    private final double[] sign ;       // +1, or -1 for BELOW and FALLING
+    private final double[] raise ;      // signed raise level
+    private final double[] clear ;      // signed clear level
+    private final long[] duration ;     // ms the raise condition must hold
+    private final long[] spacing ;      // ms between rate checkpoints
+    private final int[] rateSlot ;      // index into the rate state, or -1
+
+    // state of each (rule, station)
+    private final boolean[] active ;
+    private final long[] since ;
+
+    // checkpoints of each (rate rule, station): CHECKPOINTS entries each
+    private final long[] pointTime ;
+    private final double[] pointValue ;
+    private final int[] pointCount ;    // entries held, up to CHECKPOINTS
+    private final int[] pointNext ;     // where the next one goes
+
+    public AlertEngine(int stations, AlertRule[] rules, AlertListener listener) {
+        if( stations < 1 ) {
+            throw new IllegalArgumentException("stations must be >= 1") ;
+        }
+        this.rules = rules.clone() ;
+        this.listener = listener ;
+        this.stations = stations ;
+
+        int n = rules.length ;
+        value = new int[n] ;
+        rate = new boolean[n] ;
+        sign = new double[n] ;
+        raise = new double[n] ;
+        clear = new double[n] ;
+        duration = new long[n] ;
+        spacing = new long[n] ;
+        rateSlot = new int[n] ;
+
+        int rates = 0 ;
+        for( int r = 0 ; r < n ; r++ ) {
+            AlertRule rule = rules[r] ;
+            AlertRule.Kind kind = rule.getKind() ;
+            value[r] = valueOf(rule.getTopic()) ;
+            rate[r] = (kind == AlertRule.Kind.RISING || kind == AlertRule.Kind.FALLING) ;
+            sign[r] = (kind == AlertRule.Kind.BELOW || kind == AlertRule.Kind.FALLING) ? -1 : 1 ;
+            raise[r] = sign[r] * rule.getRaise() ;
+            clear[r] = sign[r] * rule.getClear() ;
+            if( kind == AlertRule.Kind.FALLING ) {
+                raise[r] = rule.getRaise() ;        // given as a positive fall
+                clear[r] = rule.getClear() ;
+            }
+            if( rate[r] ) {
+                spacing[r] = Math.max(1, rule.getMillis() / CHECKPOINTS) ;
+                rateSlot[r] = rates++ ;
+            } else {
+                duration[r] = rule.getMillis() ;
+                rateSlot[r] = -1 ;
+            }
+        }
+
+        this.rates = rates ;
+        active = new boolean[n * stations] ;
+        since = new long[n * stations] ;
+        Arrays.fill(since, NONE) ;
+
+        pointTime = new long[rates * stations * CHECKPOINTS] ;
+        pointValue = new double[rates * stations * CHECKPOINTS] ;
+        pointCount = new int[rates * stations] ;
+        pointNext = new int[rates * stations] ;
+    }
+
+    public int getRuleCount() {
+        return rules.length ;
+    }
+
+    public int getStationCount() {
+        return stations ;
+    }
+
+    /*
+     * Return true if <rule> (an index into the rules given) is raised for
+     * <station>.
+     */
+    public boolean isRaised(int rule, int station) {
+        return active[station * rules.length + rule] ;
+    }
+
+    /*
+     * Evaluate the Reading passed with a WeatherStation update.
+     */
+    public void update(Observable obs, Object arg) {
+        if( obs instanceof WeatherStation && arg instanceof Reading ) {
+            Reading reading = (Reading) arg ;
+            evaluate(((WeatherStation) obs).getId(), reading.getTimestamp(),
+                reading.getRawKelvin(), reading.getPressureInches()) ;
+        }
+    }
+
+    /*
+     * Evaluate every rule against one sample of a station. Samples of
+     * stations outside 0 .. stations-1 are ignored.
+     */
+    public void evaluate(int station, long time, int rawKelvin, double inches) {
+        if( station < 0 || station >= stations ) {
+            return ;
+        }
+        double kelvin = rawKelvin / 100.0 ;
+        double celsius = (rawKelvin + Reading.KTOC) / 100.0 ;
+        double fahrenheit = celsius * 1.8 + 32.0 ;
+        double millibars = inches * Reading.INCHES_TO_MBAR ;
+
+        int first = station * value.length ;
+        for( int r = 0 ; r < value.length ; r++ ) {
+            double measured ;
+            switch( value[r] ) {
+            case KELVIN:        measured = kelvin ;      break ;
+            case CELSIUS:       measured = celsius ;     break ;
+            case FAHRENHEIT:    measured = fahrenheit ;  break ;
+            case INCHES:        measured = inches ;      break ;
+            default:            measured = millibars ;   break ;     // MILLIBARS
+            }
+
+            int state = first + r ;
+            double signed ;
+            if( rate[r] ) {
+                int slot = station * rates + rateSlot[r] ;
+                double perHour = rate(slot, spacing[r], time, measured) ;
+                if( Double.isNaN(perHour) ) {
+                    continue ;          // window not yet filled
+                }
+                signed = sign[r] * perHour ;
+            } else {
+                signed = sign[r] * measured ;
+            }
+
+            if( !active[state] ) {
+                if( signed > raise[r] ) {
+                    if( since[state] == NONE ) {
+                        since[state] = time ;
+                    }
+                    if( time - since[state] >= duration[r] ) {
+                        active[state] = true ;
+                        listener.alert(station, rules[r], true, time, sign[r] * signed) ;
+                    }
+                } else {
+                    since[state] = NONE ;
+                }
+            } else if( signed < clear[r] ) {
+                active[state] = false ;
+                since[state] = NONE ;
+                listener.alert(station, rules[r], false, time, sign[r] * signed) ;
+            }
+        }
+    }
+
+    /*
+     * Map a Topic to the sample value it compares, so a Topic added
+     * without a value here is refused when the engine is built.
+     */
+    private static int valueOf(Topic topic) {
+        switch( topic ) {
+        case KELVIN:                return KELVIN ;
+        case CELSIUS:               return CELSIUS ;
+        case FAHRENHEIT:            return FAHRENHEIT ;
+        case PRESSURE_INCHES:       return INCHES ;
+        case PRESSURE_MILLIBARS:    return MILLIBARS ;
+        default:
+            throw new IllegalArgumentException("no value for topic " + topic) ;
+        }
+    }
+
+    /*
+     * Record a checkpoint if one is due and return the rate of change per
+     * hour since the oldest checkpoint, or NaN until the ring is full.
+     */
+    private double rate(int slot, long spacing, long time, double value) {
+        int base = slot * CHECKPOINTS ;
+        int count = pointCount[slot] ;
+        int next = pointNext[slot] ;
+        int newest = base + (next + CHECKPOINTS - 1) % CHECKPOINTS ;
+
+        if( count == 0 || time - pointTime[newest] >= spacing ) {
+            pointTime[base + next] = time ;
+            pointValue[base + next] = value ;
+            pointNext[slot] = next = (next + 1) % CHECKPOINTS ;
+            if( count < CHECKPOINTS ) {
+                pointCount[slot] = ++count ;
+            }
+        }
+        if( count < CHECKPOINTS ) {
+            return Double.NaN ;
+        }
+        int oldest = base + next ;              // the ring is full
+        long elapsed = time - pointTime[oldest] ;
+        if( elapsed <= 0 ) {
+            return Double.NaN ;
+        }
+        return (value - pointValue[oldest]) * 3_600_000.0 / elapsed ;
+    }
+}
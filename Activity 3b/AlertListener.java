@@ -0,0 +1,13 @@
+/*
+ * Interface for an object told when an AlertEngine raises or clears an
+ * alert. It is called on the thread that fed the engine the sample
+ * (usually the station's ticking thread), so it should return quickly.
+ */
+public interface AlertListener {
+    /*
+     * <rule> was raised (or cleared, if !<raised>) for <station> by the
+     * sample taken at <time> ms; <value> is the level, or the rate per
+     * hour, that tripped it, in the unit of the rule's topic.
+     */
+    void alert(int station, AlertRule rule, boolean raised, long time, double value) ;
+}
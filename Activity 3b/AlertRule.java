@@ -0,0 +1,119 @@
+/*
+ * Class for the description of an alert, e.g.
+ *
+ *      AlertRule.above("heat", Topic.CELSIUS, 35, 34, 5 * 60_000)
+ *          raised once Celsius has stayed above 35 for 5 minutes,
+ *          cleared when it drops below 34;
+ *
+ *      AlertRule.falling("storm", Topic.PRESSURE_INCHES, 0.06, 0.03, 3_600_000)
+ *          raised when pressure is falling faster than 0.06 inches an
+ *          hour, measured over the last hour, cleared when it is falling
+ *          slower than 0.03.
+ *
+ * The gap between the raise and clear levels (hysteresis) stops an alert
+ * from flapping when the value hovers around the threshold. Rules are
+ * immutable; an AlertEngine compiles a set of them for evaluation.
+ */
+public final class AlertRule {
+    public enum Kind { ABOVE, BELOW, RISING, FALLING }
+
+    private final String name ;
+    private final Kind kind ;
+    private final Topic topic ;
+    private final double raise ;        // level, or rate per hour
+    private final double clear ;
+    private final long millis ;         // duration (levels) or window (rates)
+
+    private AlertRule(String name, Kind kind, Topic topic, double raise,
+                      double clear, long millis) {
+        if( millis < 0 ) {
+            throw new IllegalArgumentException("duration must be >= 0") ;
+        }
+        this.name = name ;
+        this.kind = kind ;
+        this.topic = topic ;
+        this.raise = raise ;
+        this.clear = clear ;
+        this.millis = millis ;
+    }
+
+    /*
+     * Raised when <topic> has been above <raise> for <forMillis> ms;
+     * cleared when it is below <clear> (<= raise).
+     */
+    public static AlertRule above(String name, Topic topic, double raise,
+                                  double clear, long forMillis) {
+        if( clear > raise ) {
+            throw new IllegalArgumentException("clear level must be <= raise level") ;
+        }
+        return new AlertRule(name, Kind.ABOVE, topic, raise, clear, forMillis) ;
+    }
+
+    /*
+     * Raised when <topic> has been below <raise> for <forMillis> ms;
+     * cleared when it is above <clear> (>= raise).
+     */
+    public static AlertRule below(String name, Topic topic, double raise,
+                                  double clear, long forMillis) {
+        if( clear < raise ) {
+            throw new IllegalArgumentException("clear level must be >= raise level") ;
+        }
+        return new AlertRule(name, Kind.BELOW, topic, raise, clear, forMillis) ;
+    }
+
+    /*
+     * Raised when <topic> is rising faster than <perHour> an hour over
+     * the last <windowMillis> ms; cleared below <clearPerHour>.
+     */
+    public static AlertRule rising(String name, Topic topic, double perHour,
+                                   double clearPerHour, long windowMillis) {
+        if( clearPerHour > perHour || windowMillis <= 0 ) {
+            throw new IllegalArgumentException("need clear rate <= rate and a window > 0") ;
+        }
+        return new AlertRule(name, Kind.RISING, topic, perHour, clearPerHour, windowMillis) ;
+    }
+
+    /*
+     * Raised when <topic> is falling faster than <perHour> (> 0) an hour
+     * over the last <windowMillis> ms; cleared below <clearPerHour>.
+     */
+    public static AlertRule falling(String name, Topic topic, double perHour,
+                                    double clearPerHour, long windowMillis) {
+        if( clearPerHour > perHour || windowMillis <= 0 ) {
+            throw new IllegalArgumentException("need clear rate <= rate and a window > 0") ;
+        }
+        return new AlertRule(name, Kind.FALLING, topic, perHour, clearPerHour, windowMillis) ;
+    }
+
+    public String getName() {
+        return name ;
+    }
+
+    public Kind getKind() {
+        return kind ;
+    }
+
+    public Topic getTopic() {
+        return topic ;
+    }
+
+    public double getRaise() {
+        return raise ;
+    }
+
+    public double getClear() {
+        return clear ;
+    }
+
+    /*
+     * Return how long a level must hold (ABOVE, BELOW) or the window a
+     * rate is measured over (RISING, FALLING), in ms.
+     */
+    public long getMillis() {
+        return millis ;
+    }
+
+    public String toString() {
+        return name + "[" + kind + " " + topic + " " + raise + "/" + clear + ", " + millis + " ms]" ;
+    }
+}
@@ -37,9 +37,9 @@ public class App {
         // From 3a Feedback - Close the scanner when done using it.
         scanner.close();
 
-        // Declare and instantiate new WeatherStation and thread for the app.
+        // Declare and instantiate new WeatherStation and a scheduler to tick it.
         WeatherStation ws = new WeatherStation();
-        Thread thread = new Thread(ws);
+        StationScheduler scheduler = new StationScheduler(1);
 
         // Use user choice information to setup UI.
         if (userChoice == 1) { 
@@ -52,6 +52,6 @@ public class App {
         }
 
         // Start the app.
-        thread.start() ;
+        scheduler.start(ws);
     }
 }
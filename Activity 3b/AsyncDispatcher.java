@@ -0,0 +1,357 @@
+/*
+ * Class that delivers notifications from an Observable to its Observers
+ * without making the publisher wait for any of them.
+ *
+ * Events are written into a fixed-size ring buffer and a single published
+ * sequence number is advanced. Each subscribed Observer has a private
+ * cursor into the ring and drains events at its own pace, as a task on a
+ * small pool of threads shared by every dispatcher (one per processor),
+ * so the number of threads does not grow with stations x Observers. A
+ * subscriber with nothing to do is not scheduled at all: publishing
+ * submits it again only if it has gone idle. Publishing is a slot write,
+ * a volatile store and a check per Observer, so the sampling loop returns
+ * at once. No locks are taken on either side.
+ *
+ * An Observer that blocks (e.g. writing to a pipe nobody reads) must not
+ * be able to starve the others of the shared threads. A monitor thread
+ * looks every STALL_MILLIS at the updates in progress, and for each one
+ * that has been running longer than that adds a thread to the pool, taken
+ * away again when the update returns. So there are always as many threads
+ * for the Observers that are not blocked as there are processors, and a
+ * blocked Observer costs at most one thread (its task never runs twice at
+ * once) however many events queue up for it.
+ *
+ * If StationMetrics are supplied, the time spent in each Observer's update
+ * and the end-to-end latency of each Reading delivered are recorded.
+ *
+ * NOTE: There must be a single publishing thread at a time (a station is
+ *       only ever ticked by one thread). An Observer that falls more than
+ *       a ring's worth of events behind skips ahead to the most recent
+ *       events; the number skipped is counted as lost.
+ */
+import java.lang.invoke.MethodHandles ;
+import java.lang.invoke.VarHandle ;
+import java.util.Observable ;
+import java.util.Observer ;
+import java.util.Set ;
+import java.util.concurrent.ConcurrentHashMap ;
+import java.util.concurrent.LinkedBlockingQueue ;
+import java.util.concurrent.ThreadPoolExecutor ;
+import java.util.concurrent.TimeUnit ;
+import java.util.concurrent.atomic.AtomicBoolean ;
+import java.util.concurrent.atomic.AtomicInteger ;
+import java.util.concurrent.atomic.AtomicLong ;
+
+public class AsyncDispatcher {
+    private static final int BATCH = 64 ;   // events per turn on the pool
+
+    // ring slots are written with release and read with acquire semantics
+    private static final VarHandle SLOT =
+        MethodHandles.arrayElementVarHandle(Object[].class) ;
+
+    private final Observable source ;   // passed to each Observer's update
+    private final StationMetrics metrics ; // may be null
+    private final Object[] ring ;       // published events
+    private final int mask ;            // ring.length - 1
+
+    private final AtomicLong published = new AtomicLong(-1) ; // last sequence
+    private long next = 0 ;             // next sequence (publisher only)
+
+    private volatile Subscriber[] subscribers = new Subscriber[0] ;
+
+    /*
+     * Create a dispatcher for the source with a ring of the given
+     * capacity, which must be a power of two.
+     */
+    public AsyncDispatcher(Observable source, int capacity) {
+        this(source, capacity, null) ;
+    }
+
+    /*
+     * As above, recording latencies into <metrics>.
+     */
+    public AsyncDispatcher(Observable source, int capacity, StationMetrics metrics) {
+        if( capacity < 2 || Integer.bitCount(capacity) != 1 ) {
+            throw new IllegalArgumentException("capacity must be a power of two") ;
+        }
+        this.source = source ;
+        this.metrics = metrics ;
+        this.ring = new Object[capacity] ;
+        this.mask = capacity - 1 ;
+    }
+
+    /*
+     * Publish an event to every subscribed Observer and return immediately.
+     */
+    public void publish(Object event) {
+        long seq = next++ ;
+        SLOT.setRelease(ring, (int) (seq & mask), event) ;
+        published.set(seq) ;
+
+        Subscriber[] targets = subscribers ;
+        for( int i = 0 ; i < targets.length ; i++ ) {
+            targets[i].schedule() ;
+        }
+    }
+
+    /*
+     * Start delivering events to the Observer on the shared threads.
+     * Only events published after this call are delivered.
+     */
+    public synchronized void subscribe(Observer observer) {
+        Subscriber[] current = subscribers ;
+        Subscriber[] updated = new Subscriber[current.length + 1] ;
+
+        System.arraycopy(current, 0, updated, 0, current.length) ;
+        updated[current.length] = new Subscriber(observer, published.get() + 1) ;
+        subscribers = updated ;
+    }
+
+    /*
+     * Stop delivering events to the Observer. Returns false if it was
+     * not subscribed.
+     */
+    public synchronized boolean unsubscribe(Observer observer) {
+        Subscriber[] current = subscribers ;
+
+        for( int i = 0 ; i < current.length ; i++ ) {
+            if( current[i].observer == observer ) {
+                Subscriber[] updated = new Subscriber[current.length - 1] ;
+                System.arraycopy(current, 0, updated, 0, i) ;
+                System.arraycopy(current, i + 1, updated, i, updated.length - i) ;
+                subscribers = updated ;
+                current[i].stop() ;
+                return true ;
+            }
+        }
+        return false ;
+    }
+
+    /*
+     * Return the number of subscribed Observers.
+     */
+    public int getSubscriberCount() {
+        return subscribers.length ;
+    }
+
+    /*
+     * Return the number of events published so far.
+     */
+    public long getPublishedCount() {
+        return published.get() + 1 ;
+    }
+
+    /*
+     * Return the number of events the Observer has skipped because it
+     * fell too far behind, or -1 if it is not subscribed.
+     */
+    public long getLostCount(Observer observer) {
+        for( Subscriber s : subscribers ) {
+            if( s.observer == observer ) {
+                return s.lost ;
+            }
+        }
+        return -1 ;
+    }
+
+    /*
+     * The threads shared by every dispatcher, created on first use, and
+     * the monitor that makes up for the ones blocked in an update.
+     */
+    private static final class Pool implements Runnable {
+        static final long STALL_MILLIS = 50 ;
+        static final int THREADS = Runtime.getRuntime().availableProcessors() ;
+        static final ThreadPoolExecutor EXECUTOR ;
+        static final Set<Subscriber> RUNNING = ConcurrentHashMap.newKeySet() ;
+        static int blocked = 0 ;        // threads added; guarded by Pool.class
+
+        static {
+            AtomicInteger counter = new AtomicInteger() ;
+            EXECUTOR = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "dispatch-" + counter.incrementAndGet()) ;
+                    t.setDaemon(true) ;
+                    return t ;
+                }) ;
+            Thread monitor = new Thread(new Pool(), "dispatch-monitor") ;
+            monitor.setDaemon(true) ;
+            monitor.start() ;
+        }
+
+        /*
+         * Add a thread for one that is blocked.
+         */
+        static synchronized void grow() {
+            blocked++ ;
+            EXECUTOR.setMaximumPoolSize(THREADS + blocked) ;
+            EXECUTOR.setCorePoolSize(THREADS + blocked) ;
+        }
+
+        /*
+         * Take the thread away again once the blocked update returns
+         * (an idle thread above the core size ends itself).
+         */
+        static synchronized void shrink() {
+            blocked-- ;
+            EXECUTOR.setCorePoolSize(THREADS + blocked) ;
+            EXECUTOR.setMaximumPoolSize(THREADS + blocked) ;
+        }
+
+        /*
+         * Body of the monitor thread.
+         */
+        public void run() {
+            long stall = TimeUnit.MILLISECONDS.toNanos(STALL_MILLIS) ;
+            while( true ) {
+                try {
+                    Thread.sleep(STALL_MILLIS) ;
+                } catch (InterruptedException e) {
+                    return ;
+                }
+                long now = System.nanoTime() ;
+                for( Subscriber s : RUNNING ) {
+                    s.checkStalled(now, stall) ;
+                }
+            }
+        }
+    }
+
+    /*
+     * One subscribed Observer, its cursor into the ring and the task
+     * that drains events for it. At most one run of the task is
+     * scheduled or running at a time, so events are delivered in order.
+     */
+    private final class Subscriber implements Runnable {
+        final Observer observer ;
+        final LatencyHistogram notify ;     // null without metrics
+        final LatencyHistogram delivery ;   // null without metrics
+        final AtomicBoolean scheduled = new AtomicBoolean() ;
+        volatile boolean running = true ;
+        volatile long lost = 0 ;
+        long cursor ;                   // next sequence to deliver
+        volatile long updateStart = 0 ; // nanoTime of the update running, or 0
+        boolean compensated = false ;   // a thread was added for this one
+
+        Subscriber(Observer observer, long cursor) {
+            this.observer = observer ;
+            this.cursor = cursor ;
+
+            String name = (metrics == null) ? null : metrics.nameFor(observer) ;
+            this.notify = (name == null) ? null : metrics.observerNotify(name) ;
+            this.delivery = (name == null) ? null : metrics.observerDelivery(name) ;
+        }
+
+        void stop() {
+            running = false ;
+        }
+
+        /*
+         * Submit the task to the pool, unless it is already scheduled
+         * or running (it then picks up the new event itself).
+         */
+        void schedule() {
+            if( !scheduled.get() && scheduled.compareAndSet(false, true) ) {
+                Pool.EXECUTOR.execute(this) ;
+            }
+        }
+
+        /*
+         * Called by the monitor: if the update in progress has run for
+         * longer than <stall> ns, have a thread added in its place.
+         */
+        void checkStalled(long now, long stall) {
+            synchronized( this ) {
+                long start = updateStart ;
+                if( start == 0 || compensated || now - start <= stall ) {
+                    return ;
+                }
+                compensated = true ;
+            }
+            Pool.grow() ;
+        }
+
+        /*
+         * Mark the update as returned, giving back any thread added for it.
+         */
+        void updateDone() {
+            synchronized( this ) {
+                updateStart = 0 ;
+                if( !compensated ) {
+                    return ;
+                }
+                compensated = false ;
+            }
+            Pool.shrink() ;
+        }
+
+        /*
+         * Deliver up to BATCH events, then give the thread up: go idle if
+         * there are no more, otherwise go to the back of the pool's queue.
+         */
+        public void run() {
+            Pool.RUNNING.add(this) ;
+            try {
+                drain() ;
+            } finally {
+                Pool.RUNNING.remove(this) ;
+            }
+        }
+
+        private void drain() {
+            int delivered = 0 ;
+
+            while( running && delivered < BATCH ) {
+                long available = published.get() ;
+
+                if( cursor > available ) {
+                    scheduled.set(false) ;
+                    /*
+                     * An event published after the check above but before
+                     * going idle found the task still scheduled; take it.
+                     */
+                    if( cursor > published.get() || !scheduled.compareAndSet(false, true) ) {
+                        return ;
+                    }
+                    continue ;
+                }
+
+                /*
+                 * The slot is read with acquire semantics, so if it holds
+                 * a later event than <cursor>'s, the sequence number that
+                 * was published before that event was written is seen too,
+                 * and the check below skips ahead instead.
+                 */
+                Object event = SLOT.getAcquire(ring, (int) (cursor & mask)) ;
+                long latest = published.get() ;
+                if( latest - cursor >= ring.length - 1 ) {
+                    long resume = latest - ring.length / 2 ;
+                    lost += resume - cursor ;
+                    cursor = resume ;
+                    continue ;
+                }
+
+                cursor++ ;
+                delivered++ ;
+                long start = System.nanoTime() ;
+                updateStart = start ;
+                try {
+                    observer.update(source, event) ;
+                } catch (Exception e) {}    // ignore exceptions
+                updateDone() ;
+
+                if( notify != null ) {
+                    long end = System.nanoTime() ;
+                    notify.record(end - start) ;
+                    if( event instanceof Reading ) {
+                        delivery.record(end - ((Reading) event).getNanoTime()) ;
+                    }
+                }
+            }
+            if( running ) {
+                Pool.EXECUTOR.execute(this) ;   // still scheduled; more to do
+            } else {
+                scheduled.set(false) ;
+            }
+        }
+    }
+}
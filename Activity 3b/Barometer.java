@@ -17,21 +17,32 @@
  *       The conversion factor is 1 inch = 33.864 mbar.
  */
  
-import java.util.Random ;   // to simulate random fluctuations.
+import java.util.SplittableRandom ; // to simulate random fluctuations.
 
-public class Barometer {
+public class Barometer implements PressureSensor {
     private final double MIN = 27.0 ;       // minimum reading
     private final double MAX = 32.0 ;       // maximum reading
     private final double DEFAULT = 29.92 ;  // default reading.
 
     private double currentPressure ;     // current sensor reading
     private boolean increasing = true ;  // TRUE if pressure increasing
-    private Random rand = new Random() ; // simulate random changes
+    private final SplittableRandom rand ; // simulate random changes
 
     /*
-     * Initialize the sensor to the DEFAULT value.
+     * Initialize the sensor to the DEFAULT value, with an unseeded
+     * random source.
      */
     public Barometer() {
+        this(new SplittableRandom()) ;
+    }
+
+    /*
+     * Initialize the sensor to the DEFAULT value, drawing its random
+     * changes from <rand> (see Simulation for reproducible runs). The
+     * stream must not be shared with another sensor.
+     */
+    public Barometer(SplittableRandom rand) {
+        this.rand = rand ;
         currentPressure = DEFAULT ;
     }
 
@@ -0,0 +1,340 @@
+/*
+ * Micro-benchmarks for the sensing, notification and formatting hot paths.
+ *
+ * Each benchmark is warmed up, then timed over several fixed-length
+ * measurement rounds. The results report the time per operation, the
+ * throughput and the bytes allocated per operation (from the HotSpot
+ * per-thread allocation counter), so a run doubles as a rough allocation
+ * profile.
+ *
+ * Usage:
+ *      java Benchmarks [filter] [--save file] [--compare file]
+ *
+ * Only benchmarks whose names contain <filter> are run. --save writes the
+ * results as a baseline (name=ns/op,bytes/op per line) and --compare
+ * prints each result next to the one in an earlier baseline.
+ */
+import java.io.FileInputStream ;
+import java.io.FileOutputStream ;
+import java.io.IOException ;
+import java.io.OutputStream ;
+import java.io.PrintStream ;
+import java.lang.management.ManagementFactory ;
+import java.nio.channels.Channels ;
+import java.util.LinkedHashMap ;
+import java.util.Map ;
+import java.util.Observer ;
+import java.util.Properties ;
+
+import javax.swing.JLabel ;
+
+public class Benchmarks {
+    private static final long WARMUP_NANOS = 1_000_000_000L ;   // 1 sec
+    private static final long ROUND_NANOS = 200_000_000L ;      // 200 ms
+    private static final int ROUNDS = 5 ;
+
+    /*
+     * One benchmarked operation, run <count> times per call. The
+     * return value is consumed so the work cannot be optimized away.
+     */
+    interface Operation {
+        long run(long count) ;
+    }
+
+    private static volatile long sink ;
+
+    private final String filter ;
+    private final PrintStream report = System.out ; // survives setOut()
+    private final Map<String, double[]> results = new LinkedHashMap<>() ;
+    private final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean() ;
+
+    public Benchmarks(String filter) {
+        this.filter = filter ;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String filter = "" ;
+        String save = null ;
+        String compare = null ;
+
+        for( int i = 0 ; i < args.length ; i++ ) {
+            if( args[i].equals("--save") && i + 1 < args.length ) {
+                save = args[++i] ;
+            } else if( args[i].equals("--compare") && i + 1 < args.length ) {
+                compare = args[++i] ;
+            } else {
+                filter = args[i] ;
+            }
+        }
+
+        Benchmarks bench = new Benchmarks(filter) ;
+        bench.runAll() ;
+
+        if( compare != null ) {
+            bench.compare(compare) ;
+        }
+        if( save != null ) {
+            bench.save(save) ;
+        }
+    }
+
+    /*
+     * Run every benchmark that matches the filter.
+     */
+    public void runAll() {
+        report.printf("%-36s %12s %14s %10s%n",
+            "benchmark", "ns/op", "ops/s", "B/op") ;
+
+        KelvinTempSensor sensor = new KelvinTempSensor() ;
+        measure("sensor.reading", n -> {
+            long sum = 0 ;
+            for( long i = 0 ; i < n ; i++ ) {
+                sum += sensor.reading() ;
+            }
+            return sum ;
+        }) ;
+
+        Barometer barometer = new Barometer() ;
+        measure("barometer.pressure", n -> {
+            double sum = 0 ;
+            for( long i = 0 ; i < n ; i++ ) {
+                sum += barometer.pressure() ;
+            }
+            return (long) sum ;
+        }) ;
+
+        for( int observers : new int[] {1, 10, 100, 1000} ) {
+            WeatherStation station = new WeatherStation() ;
+            long[] calls = new long[1] ;
+            for( int i = 0 ; i < observers ; i++ ) {
+                station.addObserver((obs, arg) -> calls[0]++) ;
+            }
+            measure("station.tick/" + observers + " observers", n -> {
+                for( long i = 0 ; i < n ; i++ ) {
+                    station.tick() ;
+                }
+                return calls[0] ;
+            }) ;
+        }
+
+        WeatherStation topical = new WeatherStation() ;
+        long[] values = new long[1] ;
+        for( int i = 0 ; i < 100 ; i++ ) {
+            topical.subscribe(Topic.CELSIUS, (ws, topic, value) -> values[0]++) ;
+        }
+        measure("station.tick/100 CELSIUS listeners", n -> {
+            for( long i = 0 ; i < n ; i++ ) {
+                topical.tick() ;
+            }
+            return values[0] ;
+        }) ;
+
+        WeatherStation station = new WeatherStation() ;
+        Reading reading = station.getReading() ;
+        Observer text = new TextUI(station, new ConsoleWriter(
+            Channels.newChannel(OutputStream.nullOutputStream()), 64 * 1024)) ;
+        station.deleteAsyncObserver(text) ;
+        measure("TextUI.update", n -> {
+            for( long i = 0 ; i < n ; i++ ) {
+                text.update(station, reading) ;
+            }
+            return n ;
+        }) ;
+
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())) ;
+        try {
+            measure("printf (previous TextUI.update)", n -> {
+                for( long i = 0 ; i < n ; i++ ) {
+                    System.out.printf(FixedPointFormatter.FORMAT,
+                        reading.getCelsius(), reading.getFahrenheit(),
+                        reading.getKelvin(), reading.getPressureInches(),
+                        reading.getPressureMillibars()) ;
+                }
+                return n ;
+            }) ;
+        } finally {
+            System.setOut(report) ;
+        }
+
+        double celsius = reading.getCelsius() ;
+        measure("String.format(%6.2f)", n -> {
+            long length = 0 ;
+            for( long i = 0 ; i < n ; i++ ) {
+                length += String.format("%6.2f", celsius).length() ;
+            }
+            return length ;
+        }) ;
+
+        /*
+         * SwingUI needs a display, so setWeatherJLabel is measured as the
+         * same format-and-setText on a stand-alone label.
+         */
+        JLabel label = new JLabel() ;
+        measure("setWeatherJLabel", n -> {
+            for( long i = 0 ; i < n ; i++ ) {
+                label.setText(String.format("%6.2f", celsius + (i & 1))) ;
+            }
+            return label.getText().length() ;
+        }) ;
+
+        DisplayCache cache = DisplayCache.shared() ;
+        int raw = reading.getRawKelvin() ;
+        measure("DisplayCache.text", n -> {
+            long length = 0 ;
+            for( long i = 0 ; i < n ; i++ ) {
+                length += cache.text(raw + (int) (i & 1), DisplayCache.CELSIUS).length() ;
+            }
+            return length ;
+        }) ;
+        measure("setWeatherJLabel (DisplayCache)", n -> {
+            for( long i = 0 ; i < n ; i++ ) {
+                label.setText(cache.text(raw + (int) (i & 1), DisplayCache.CELSIUS)) ;
+            }
+            return label.getText().length() ;
+        }) ;
+
+        /*
+         * AlertEngine: one op is one sample evaluated against every rule,
+         * the samples going round the stations in turn, a second apart.
+         */
+        Simulation simulation = new Simulation(1) ;
+        KelvinTempSensor seededSensor = simulation.newTemperatureSensor(0) ;
+        Barometer seededBarometer = simulation.newBarometer(0) ;
+        int[] kelvins = new int[4096] ;
+        double[] inches = new double[4096] ;
+        for( int i = 0 ; i < kelvins.length ; i++ ) {
+            kelvins[i] = seededSensor.reading() ;
+            inches[i] = seededBarometer.pressure() ;
+        }
+        long[] alerts = new long[1] ;
+        for( int[] size : new int[][] { {1, 1000}, {10, 1000}, {100, 1000}, {10, 100_000} } ) {
+            int ruleCount = size[0] ;
+            int stationCount = size[1] ;
+            AlertEngine engine = new AlertEngine(stationCount, alertRules(ruleCount),
+                (id, rule, raised, time, value) -> alerts[0]++) ;
+            measure("AlertEngine/" + ruleCount + " rules x " + stationCount + " stations", n -> {
+                int id = 0 ;
+                long time = 0 ;
+                for( long i = 0 ; i < n ; i++ ) {
+                    int at = (int) i & 4095 ;
+                    engine.evaluate(id, time, kelvins[at], inches[at]) ;
+                    if( ++id == stationCount ) {
+                        id = 0 ;
+                        time += 1000 ;
+                    }
+                }
+                return alerts[0] ;
+            }) ;
+        }
+    }
+
+    /*
+     * Return <count> rules of each kind in turn, with varied thresholds.
+     */
+    private static AlertRule[] alertRules(int count) {
+        AlertRule[] rules = new AlertRule[count] ;
+        for( int r = 0 ; r < count ; r++ ) {
+            switch( r % 4 ) {
+            case 0:
+                rules[r] = AlertRule.above("hot" + r, Topic.CELSIUS, 30 + r % 10, 28, 300_000) ;
+                break ;
+            case 1:
+                rules[r] = AlertRule.below("cold" + r, Topic.FAHRENHEIT, 20 - r % 10, 25, 60_000) ;
+                break ;
+            case 2:
+                rules[r] = AlertRule.falling("fall" + r, Topic.PRESSURE_INCHES, 0.06, 0.03, 3_600_000) ;
+                break ;
+            default:
+                rules[r] = AlertRule.rising("rise" + r, Topic.PRESSURE_MILLIBARS, 2.0, 1.0, 3_600_000) ;
+                break ;
+            }
+        }
+        return rules ;
+    }
+
+    /*
+     * Warm up and time one operation, print and remember the result.
+     */
+    public void measure(String name, Operation op) {
+        if( !name.contains(filter) ) {
+            return ;
+        }
+
+        /*
+         * Warm up, growing the batch size until one batch takes about a
+         * tenth of a round.
+         */
+        long batch = 1 ;
+        long start = System.nanoTime() ;
+        while( System.nanoTime() - start < WARMUP_NANOS ) {
+            long t = System.nanoTime() ;
+            sink += op.run(batch) ;
+            if( System.nanoTime() - t < ROUND_NANOS / 10 ) {
+                batch *= 2 ;
+            }
+        }
+
+        double bestNanos = Double.MAX_VALUE ;
+        long totalOps = 0 ;
+        long totalBytes = 0 ;
+        long id = Thread.currentThread().getId() ;
+
+        for( int round = 0 ; round < ROUNDS ; round++ ) {
+            long ops = 0 ;
+            long bytes = threads.getThreadAllocatedBytes(id) ;
+            long t = System.nanoTime() ;
+            long elapsed ;
+            do {
+                sink += op.run(batch) ;
+                ops += batch ;
+            } while( (elapsed = System.nanoTime() - t) < ROUND_NANOS ) ;
+
+            totalBytes += threads.getThreadAllocatedBytes(id) - bytes ;
+            totalOps += ops ;
+            bestNanos = Math.min(bestNanos, (double) elapsed / ops) ;
+        }
+
+        double bytesPerOp = (double) totalBytes / totalOps ;
+        results.put(name, new double[] {bestNanos, bytesPerOp}) ;
+        report.printf("%-36s %12.2f %14.0f %10.1f%n",
+            name, bestNanos, 1e9 / bestNanos, bytesPerOp) ;
+    }
+
+    /*
+     * Write the results to a baseline file.
+     */
+    public void save(String file) throws IOException {
+        Properties baseline = new Properties() ;
+        for( Map.Entry<String, double[]> e : results.entrySet() ) {
+            baseline.setProperty(e.getKey(),
+                e.getValue()[0] + "," + e.getValue()[1]) ;
+        }
+        try (OutputStream os = new FileOutputStream(file)) {
+            baseline.store(os, "Benchmarks baseline (ns/op,bytes/op)") ;
+        }
+    }
+
+    /*
+     * Print the results next to those in a baseline file.
+     */
+    public void compare(String file) throws IOException {
+        Properties baseline = new Properties() ;
+        try (FileInputStream is = new FileInputStream(file)) {
+            baseline.load(is) ;
+        }
+
+        report.printf("%n%-36s %12s %12s %8s%n",
+            "benchmark", "base ns/op", "ns/op", "change") ;
+        for( Map.Entry<String, double[]> e : results.entrySet() ) {
+            String value = baseline.getProperty(e.getKey()) ;
+            if( value == null ) {
+                continue ;
+            }
+            double base = Double.parseDouble(value.split(",")[0]) ;
+            double now = e.getValue()[0] ;
+            report.printf("%-36s %12.2f %12.2f %+7.1f%%%n",
+                e.getKey(), base, now, (now - base) * 100.0 / base) ;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Class for reading back, most significant bit first, bits written by a
+ * BitWriter. Reading past the end yields zeros.
+ */
+import java.lang.invoke.MethodHandles ;
+import java.lang.invoke.VarHandle ;
+import java.nio.ByteOrder ;
+
+public class BitReader {
+    private static final VarHandle LONGS =
+        MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN) ;
+
+    private final byte[] bytes ;
+    private final int end ;     // byte offset just past the stream
+    private long position ;     // bit offset of the next bit
+
+    public BitReader(byte[] bytes) {
+        this(bytes, 0, bytes.length) ;
+    }
+
+    /*
+     * Read the <length> bytes of <bytes> starting at <offset>.
+     */
+    public BitReader(byte[] bytes, int offset, int length) {
+        this.bytes = bytes ;
+        this.end = offset + length ;
+        this.position = (long) offset << 3 ;
+    }
+
+    /*
+     * Read <count> bits (0 <= count <= 64) as an unsigned value.
+     */
+    public long read(int count) {
+        if( count > 56 ) {
+            long high = read(count - 32) ;
+            return (high << 32) | read(32) ;
+        }
+        if( count == 0 ) {
+            return 0 ;
+        }
+        int index = (int) (position >>> 3) ;
+        int used = (int) (position & 7) ;
+        position += count ;
+        return (window(index) << used) >>> (64 - count) ;
+    }
+
+    public boolean readBit() {
+        return read(1) != 0 ;
+    }
+
+    /*
+     * Return the 8 bytes starting at <index>, big-endian, with zeros for
+     * any past the end.
+     */
+    private long window(int index) {
+        if( index + 8 <= end ) {
+            return (long) LONGS.get(bytes, index) ;
+        }
+        long word = 0 ;
+        for( int i = 0 ; i < 8 ; i++ ) {
+            int at = index + i ;
+            word = (word << 8) | ((at < end) ? bytes[at] & 0xff : 0) ;
+        }
+        return word ;
+    }
+}
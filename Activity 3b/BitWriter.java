@@ -0,0 +1,72 @@
+/*
+ * Class for writing a stream of bits, most significant bit first, into a
+ * growable byte array. Used by the CompressedBlock encoders.
+ */
+import java.util.Arrays ;
+
+public class BitWriter {
+    private byte[] bytes ;
+    private int length = 0 ;    // whole bytes in <bytes>
+    private long current = 0 ;  // bits not yet in <bytes>, left aligned
+    private int used = 0 ;      // number of them (0 .. 63)
+
+    public BitWriter() {
+        this(64) ;
+    }
+
+    public BitWriter(int initialBytes) {
+        bytes = new byte[Math.max(8, initialBytes)] ;
+    }
+
+    /*
+     * Write the low <count> bits of <value> (0 <= count <= 64).
+     */
+    public void write(long value, int count) {
+        if( count == 0 ) {
+            return ;
+        }
+        if( count < 64 ) {
+            value &= (1L << count) - 1 ;
+        }
+        int free = 64 - used ;
+        if( count < free ) {
+            current |= value << (free - count) ;
+            used += count ;
+        } else {
+            int spill = count - free ;
+            current |= value >>> spill ;
+            flushWord() ;
+            current = (spill == 0) ? 0 : value << (64 - spill) ;
+            used = spill ;
+        }
+    }
+
+    public void writeBit(boolean bit) {
+        write(bit ? 1 : 0, 1) ;
+    }
+
+    public long getBitLength() {
+        return (long) length * 8 + used ;
+    }
+
+    /*
+     * Return the bits written so far, padded with zeros to whole bytes.
+     */
+    public byte[] toByteArray() {
+        int tail = (used + 7) >>> 3 ;
+        byte[] result = Arrays.copyOf(bytes, length + tail) ;
+        for( int i = 0 ; i < tail ; i++ ) {
+            result[length + i] = (byte) (current >>> (56 - 8 * i)) ;
+        }
+        return result ;
+    }
+
+    private void flushWord() {
+        if( length + 8 > bytes.length ) {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2) ;
+        }
+        for( int i = 0 ; i < 8 ; i++ ) {
+            bytes[length++] = (byte) (current >>> (56 - 8 * i)) ;
+        }
+    }
+}
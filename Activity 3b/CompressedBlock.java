@@ -0,0 +1,461 @@
+/*
+ * Class for an immutable, compressed block of readings from one station,
+ * in the style of Facebook's Gorilla time series format. Each of the
+ * three columns is encoded into a bit stream of its own:
+ *
+ *  - timestamps:   the first as 64 bits, then the delta-of-delta of each
+ *                  (0 for a steady 1 Hz station, so 1 bit per sample),
+ *  - raw Kelvin:   the first as 32 bits, then the delta-of-delta of each
+ *                  (a trend continuing by a similar step is small),
+ *  - pressure:     the first as 64 bits, then each value XORed with the
+ *                  previous one, storing only the bits that differ, or
+ *                  if the Encoder is given a pressure scale, in fixed
+ *                  point (inches * scale, rounded) as the first in 32
+ *                  bits, then the delta-of-delta of each.
+ *
+ * Deltas-of-deltas are written as a short prefix selecting a bucket,
+ * followed by the zigzag-encoded value in that bucket's width:
+ *
+ *      timestamps   0 | 10 + 7 | 110 + 9 | 1110 + 12 | 1111 + 64 bits
+ *      raw Kelvin   0 + 8 | 10 + 12 | 11 + 64 bits
+ *      fixed point  0 + 5 | 10 + 7 | 11 + 64 bits
+ *
+ * Blocks are built with an Encoder, one sample at a time, and read back
+ * with a Cursor (or all at once with decode()). Columns can be decoded on
+ * their own, so a query on time alone need not touch the other two.
+ *
+ * Layout of toByteArray():
+ *      int count, int pressure scale (LOSSLESS = 0), int timestamp bytes,
+ *      int Kelvin bytes, int pressure bytes, then the three bit streams.
+ *
+ * NOTE: The sizes achieved depend on the data. The simulated Barometer
+ *       draws a full-precision random double every tick, so losslessly
+ *       about 50 of every pressure's 64 bits differ from the last one and
+ *       pressure alone costs some 7 bytes per sample. (XOR coding favours
+ *       values that repeat or change in few bits; even pressures rounded
+ *       to 0.01 inch differ in most of their mantissa bits from one tick
+ *       to the next.) With HUNDREDTHS, which keeps pressure to the 0.01
+ *       inch that is displayed, it costs under 1 byte. The simulated Kelvin
+ *       readings, which jump by up to 3 degrees a tick, then take most of
+ *       the rest: some 2.2 bytes per sample in all against 8.5 losslessly.
+ */
+import java.nio.ByteBuffer ;
+
+public class CompressedBlock {
+    public static final int LOSSLESS = 0 ;      // pressure scale: XOR coded
+    public static final int HUNDREDTHS = 100 ;  // pressure to 0.01 inch
+
+    private static final int HEADER = 20 ;
+    private static final int[] TIME_WIDTHS = { 0, 7, 9, 12, 64 } ;
+    private static final int[] KELVIN_WIDTHS = { 8, 12, 64 } ;
+    private static final int[] FIXED_WIDTHS = { 5, 7, 64 } ;
+
+    private final int count ;
+    private final int pressureScale ;
+    private final long firstTimestamp ;
+    private final long lastTimestamp ;
+    private final byte[] times ;
+    private final byte[] kelvins ;
+    private final byte[] pressures ;
+
+    private CompressedBlock(int count, int pressureScale, long firstTimestamp,
+                            long lastTimestamp, byte[] times, byte[] kelvins,
+                            byte[] pressures) {
+        this.count = count ;
+        this.pressureScale = pressureScale ;
+        this.firstTimestamp = firstTimestamp ;
+        this.lastTimestamp = lastTimestamp ;
+        this.times = times ;
+        this.kelvins = kelvins ;
+        this.pressures = pressures ;
+    }
+
+    public int getCount() {
+        return count ;
+    }
+
+    public long getFirstTimestamp() {
+        return firstTimestamp ;
+    }
+
+    public long getLastTimestamp() {
+        return lastTimestamp ;
+    }
+
+    /*
+     * Return the fixed-point scale pressures were stored at, or LOSSLESS.
+     */
+    public int getPressureScale() {
+        return pressureScale ;
+    }
+
+    /*
+     * Return the size of the encoded block, header included.
+     */
+    public int getSizeInBytes() {
+        return HEADER + times.length + kelvins.length + pressures.length ;
+    }
+
+    public double getBytesPerSample() {
+        return count == 0 ? 0.0 : (double) getSizeInBytes() / count ;
+    }
+
+    public Cursor cursor() {
+        return new Cursor() ;
+    }
+
+    /*
+     * Decode the whole block into the arrays (each at least getCount()
+     * long; any may be null to skip that column). Returns the count.
+     */
+    public int decode(long[] times, int[] kelvins, double[] inches) {
+        if( times != null ) {
+            DeltaDecoder d = new DeltaDecoder(new BitReader(this.times), TIME_WIDTHS, 64) ;
+            for( int i = 0 ; i < count ; i++ ) {
+                times[i] = d.next() ;
+            }
+        }
+        if( kelvins != null ) {
+            DeltaDecoder d = new DeltaDecoder(new BitReader(this.kelvins), KELVIN_WIDTHS, 32) ;
+            for( int i = 0 ; i < count ; i++ ) {
+                kelvins[i] = (int) d.next() ;
+            }
+        }
+        if( inches != null && pressureScale == LOSSLESS ) {
+            XorDecoder d = new XorDecoder(new BitReader(pressures)) ;
+            for( int i = 0 ; i < count ; i++ ) {
+                inches[i] = d.next() ;
+            }
+        } else if( inches != null ) {
+            DeltaDecoder d = new DeltaDecoder(new BitReader(pressures), FIXED_WIDTHS, 32) ;
+            for( int i = 0 ; i < count ; i++ ) {
+                inches[i] = (double) d.next() / pressureScale ;
+            }
+        }
+        return count ;
+    }
+
+    public byte[] toByteArray() {
+        ByteBuffer out = ByteBuffer.allocate(getSizeInBytes()) ;
+        out.putInt(count).putInt(pressureScale)
+           .putInt(times.length).putInt(kelvins.length).putInt(pressures.length)
+           .put(times).put(kelvins).put(pressures) ;
+        return out.array() ;
+    }
+
+    /*
+     * Rebuild a block from the output of toByteArray().
+     */
+    public static CompressedBlock fromByteArray(byte[] data) {
+        ByteBuffer in = ByteBuffer.wrap(data) ;
+        int count = in.getInt() ;
+        int pressureScale = in.getInt() ;
+        byte[] times = new byte[in.getInt()] ;
+        byte[] kelvins = new byte[in.getInt()] ;
+        byte[] pressures = new byte[in.getInt()] ;
+        in.get(times).get(kelvins).get(pressures) ;
+
+        long first = 0 ;
+        long last = 0 ;
+        DeltaDecoder d = new DeltaDecoder(new BitReader(times), TIME_WIDTHS, 64) ;
+        for( int i = 0 ; i < count ; i++ ) {
+            last = d.next() ;
+            if( i == 0 ) {
+                first = last ;
+            }
+        }
+        return new CompressedBlock(count, pressureScale, first, last, times, kelvins, pressures) ;
+    }
+
+    /*
+     * Class for building a block one sample at a time.
+     */
+    public static final class Encoder {
+        private final BitWriter times = new BitWriter() ;
+        private final BitWriter kelvins = new BitWriter() ;
+        private final BitWriter pressures = new BitWriter() ;
+        private final DeltaEncoder timeEncoder = new DeltaEncoder(times, TIME_WIDTHS, 64) ;
+        private final DeltaEncoder kelvinEncoder = new DeltaEncoder(kelvins, KELVIN_WIDTHS, 32) ;
+        private final int pressureScale ;
+        private final XorEncoder pressureEncoder ;      // LOSSLESS only
+        private final DeltaEncoder fixedEncoder ;       // otherwise
+
+        private int count = 0 ;
+        private long firstTimestamp ;
+        private long lastTimestamp ;
+
+        /*
+         * Build a block that keeps pressures exactly.
+         */
+        public Encoder() {
+            this(LOSSLESS) ;
+        }
+
+        /*
+         * Build a block that keeps pressures to 1/<pressureScale> inch
+         * (e.g. HUNDREDTHS), or exactly if it is LOSSLESS. Pressures are
+         * rounded, so they must be finite and within the range of an int
+         * once scaled.
+         */
+        public Encoder(int pressureScale) {
+            if( pressureScale < 0 ) {
+                throw new IllegalArgumentException("pressure scale must be >= 0") ;
+            }
+            this.pressureScale = pressureScale ;
+            this.pressureEncoder = (pressureScale == LOSSLESS) ? new XorEncoder(pressures) : null ;
+            this.fixedEncoder = (pressureScale == LOSSLESS) ? null
+                : new DeltaEncoder(pressures, FIXED_WIDTHS, 32) ;
+        }
+
+        public void append(long timestamp, int rawKelvin, double inches) {
+            if( count == 0 ) {
+                firstTimestamp = timestamp ;
+            }
+            lastTimestamp = timestamp ;
+            timeEncoder.add(timestamp) ;
+            kelvinEncoder.add(rawKelvin) ;
+            if( fixedEncoder == null ) {
+                pressureEncoder.add(inches) ;
+            } else {
+                fixedEncoder.add(Math.round(inches * pressureScale)) ;
+            }
+            count++ ;
+        }
+
+        public void append(Reading reading) {
+            append(reading.getTimestamp(), reading.getRawKelvin(), reading.getPressureInches()) ;
+        }
+
+        public int getCount() {
+            return count ;
+        }
+
+        /*
+         * Return the bytes the block would take if finished now.
+         */
+        public int getSizeInBytes() {
+            return HEADER + (int) ((times.getBitLength() + 7) >>> 3)
+                      + (int) ((kelvins.getBitLength() + 7) >>> 3)
+                      + (int) ((pressures.getBitLength() + 7) >>> 3) ;
+        }
+
+        /*
+         * Return the block of everything appended. The encoder must not
+         * be used afterwards.
+         */
+        public CompressedBlock finish() {
+            return new CompressedBlock(count, pressureScale, firstTimestamp, lastTimestamp,
+                times.toByteArray(), kelvins.toByteArray(), pressures.toByteArray()) ;
+        }
+    }
+
+    /*
+     * Class for reading a block's samples in order:
+     *
+     *      CompressedBlock.Cursor c = block.cursor() ;
+     *      while( c.next() ) {
+     *          ... c.getTimestamp(), c.getRawKelvin(), c.getPressureInches()
+     *      }
+     */
+    public final class Cursor {
+        private final DeltaDecoder timeDecoder =
+            new DeltaDecoder(new BitReader(times), TIME_WIDTHS, 64) ;
+        private final DeltaDecoder kelvinDecoder =
+            new DeltaDecoder(new BitReader(kelvins), KELVIN_WIDTHS, 32) ;
+        private final XorDecoder pressureDecoder = (pressureScale == LOSSLESS) ?
+            new XorDecoder(new BitReader(pressures)) : null ;
+        private final DeltaDecoder fixedDecoder = (pressureScale == LOSSLESS) ? null :
+            new DeltaDecoder(new BitReader(pressures), FIXED_WIDTHS, 32) ;
+
+        private int remaining = count ;
+        private long timestamp ;
+        private int kelvin ;
+        private double pressure ;
+
+        /*
+         * Move to the next sample; false when there are no more.
+         */
+        public boolean next() {
+            if( remaining == 0 ) {
+                return false ;
+            }
+            remaining-- ;
+            timestamp = timeDecoder.next() ;
+            kelvin = (int) kelvinDecoder.next() ;
+            pressure = (fixedDecoder == null) ? pressureDecoder.next()
+                                              : (double) fixedDecoder.next() / pressureScale ;
+            return true ;
+        }
+
+        public long getTimestamp() {
+            return timestamp ;
+        }
+
+        public int getRawKelvin() {
+            return kelvin ;
+        }
+
+        public double getPressureInches() {
+            return pressure ;
+        }
+    }
+
+    /*
+     * Delta-of-delta coding of a column of integers. The first value is
+     * written in <firstWidth> bits; after that, each delta-of-delta goes
+     * into the first bucket of <widths> wide enough for it.
+     */
+    private static final class DeltaEncoder {
+        private final BitWriter out ;
+        private final int[] widths ;
+        private final int firstWidth ;
+        private boolean started = false ;
+        private long previous ;
+        private long delta = 0 ;
+
+        DeltaEncoder(BitWriter out, int[] widths, int firstWidth) {
+            this.out = out ;
+            this.widths = widths ;
+            this.firstWidth = firstWidth ;
+        }
+
+        void add(long value) {
+            if( !started ) {
+                started = true ;
+                out.write(value, firstWidth) ;
+            } else {
+                long d = value - previous ;
+                long zigzag = ((d - delta) << 1) ^ ((d - delta) >> 63) ;
+                int bucket = 0 ;
+                while( bucket < widths.length - 1 && !fits(zigzag, widths[bucket]) ) {
+                    bucket++ ;
+                }
+                // <bucket> ones, then a zero unless it is the last bucket
+                if( bucket == widths.length - 1 ) {
+                    out.write(-1L, bucket) ;
+                } else {
+                    out.write(((1L << bucket) - 1) << 1, bucket + 1) ;
+                }
+                out.write(zigzag, widths[bucket]) ;
+                delta = d ;
+            }
+            previous = value ;
+        }
+
+        private static boolean fits(long zigzag, int width) {
+            return width == 0 ? zigzag == 0 : (zigzag >>> width) == 0 ;
+        }
+    }
+
+    private static final class DeltaDecoder {
+        private final BitReader in ;
+        private final int[] widths ;
+        private final int firstWidth ;
+        private boolean started = false ;
+        private long previous ;
+        private long delta = 0 ;
+
+        DeltaDecoder(BitReader in, int[] widths, int firstWidth) {
+            this.in = in ;
+            this.widths = widths ;
+            this.firstWidth = firstWidth ;
+        }
+
+        long next() {
+            if( !started ) {
+                started = true ;
+                previous = in.read(firstWidth) ;
+                if( firstWidth < 64 ) {        // sign-extend
+                    previous = (previous << (64 - firstWidth)) >> (64 - firstWidth) ;
+                }
+                return previous ;
+            }
+            int bucket = 0 ;
+            while( bucket < widths.length - 1 && in.readBit() ) {
+                bucket++ ;
+            }
+            long zigzag = in.read(widths[bucket]) ;
+            delta += (zigzag >>> 1) ^ -(zigzag & 1) ;
+            previous += delta ;
+            return previous ;
+        }
+    }
+
+    /*
+     * Gorilla XOR coding of a column of doubles:
+     *      0                       same as the previous value
+     *      10 + bits               differing bits fit the previous window
+     *      11 + 5 bits leading zeros + 6 bits length + bits
+     */
+    private static final class XorEncoder {
+        private final BitWriter out ;
+        private boolean started = false ;
+        private long previous ;
+        private int leading = -1 ;      // window of the last stored bits
+        private int trailing ;
+
+        XorEncoder(BitWriter out) {
+            this.out = out ;
+        }
+
+        void add(double value) {
+            long bits = Double.doubleToRawLongBits(value) ;
+            if( !started ) {
+                started = true ;
+                out.write(bits, 64) ;
+            } else {
+                long xor = bits ^ previous ;
+                if( xor == 0 ) {
+                    out.write(0, 1) ;
+                } else {
+                    int lead = Math.min(31, Long.numberOfLeadingZeros(xor)) ;
+                    int trail = Long.numberOfTrailingZeros(xor) ;
+                    if( leading >= 0 && lead >= leading && trail >= trailing ) {
+                        out.write(0b10, 2) ;
+                        out.write(xor >>> trailing, 64 - leading - trailing) ;
+                    } else {
+                        int length = 64 - lead - trail ;
+                        out.write(0b11, 2) ;
+                        out.write(lead, 5) ;
+                        out.write(length & 63, 6) ;    // 64 is written as 0
+                        out.write(xor >>> trail, length) ;
+                        leading = lead ;
+                        trailing = trail ;
+                    }
+                }
+            }
+            previous = bits ;
+        }
+    }
+
+    private static final class XorDecoder {
+        private final BitReader in ;
+        private boolean started = false ;
+        private long previous ;
+        private int leading ;
+        private int trailing ;
+
+        XorDecoder(BitReader in) {
+            this.in = in ;
+        }
+
+        double next() {
+            if( !started ) {
+                started = true ;
+                previous = in.read(64) ;
+            } else if( in.readBit() ) {
+                if( in.readBit() ) {
+                    leading = (int) in.read(5) ;
+                    int length = (int) in.read(6) ;
+                    if( length == 0 ) {
+                        length = 64 ;
+                    }
+                    trailing = 64 - leading - length ;
+                }
+                int length = 64 - leading - trailing ;
+                previous ^= in.read(length) << trailing ;
+            }
+            return Double.longBitsToDouble(previous) ;
+        }
+    }
+}
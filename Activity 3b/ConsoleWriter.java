@@ -0,0 +1,187 @@
+/*
+ * Class that batches text output (e.g. from many TextUIs) into one buffer
+ * and writes it to a channel in large chunks instead of one small write
+ * per line.
+ *
+ * Writers only ever copy into the buffer; they never touch the channel,
+ * so a writer cannot be held up by it (standard output piped to a reader
+ * that has stopped reading would otherwise block every TextUI, and the
+ * threads they run on). A background thread swaps the filled buffer for
+ * an empty one and writes it out every FLUSH_MILLIS, or as soon as the
+ * buffer is half full. If the channel cannot keep up and the buffer
+ * fills, further writes are dropped whole (and counted, see
+ * getDroppedCount) until there is room again.
+ *
+ * ConsoleWriter.stdout() returns a writer shared by everything printing
+ * to standard output. It is also flushed when the JVM shuts down (e.g.
+ * on System.exit), so the last lines printed are not lost.
+ */
+import java.io.FileDescriptor ;
+import java.io.FileOutputStream ;
+import java.io.IOException ;
+import java.nio.ByteBuffer ;
+import java.nio.channels.WritableByteChannel ;
+import java.util.concurrent.TimeUnit ;
+import java.util.concurrent.locks.ReentrantLock ;
+
+public class ConsoleWriter implements AutoCloseable {
+    public static final long FLUSH_MILLIS = 50 ;
+    private static final int BUFFER_SIZE = 64 * 1024 ;
+    private static final long SHUTDOWN_MILLIS = 1000 ;  // longest exit wait
+
+    private static ConsoleWriter stdout ;
+
+    private final WritableByteChannel channel ;
+    private final Thread flusher ;
+    private volatile boolean open = true ;
+
+    private ByteBuffer filling ;        // written into; guarded by this
+    private ByteBuffer writing ;        // written out; guarded by channelLock
+    private final ReentrantLock channelLock = new ReentrantLock() ;
+
+    private long dropped = 0 ;          // writes dropped; guarded by this
+    private IOException failure ;       // from the last write out, if any
+
+    /*
+     * Return the shared writer for standard output, creating it (and the
+     * shutdown hook that flushes it) on first use.
+     */
+    public static synchronized ConsoleWriter stdout() {
+        if( stdout == null ) {
+            ConsoleWriter writer = new ConsoleWriter(
+                new FileOutputStream(FileDescriptor.out).getChannel(), BUFFER_SIZE) ;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    writer.flush(SHUTDOWN_MILLIS) ;
+                } catch (IOException e) {}  // ignore exceptions
+            }, "console-shutdown")) ;
+            stdout = writer ;
+        }
+        return stdout ;
+    }
+
+    /*
+     * Create a writer for the channel with a buffer of the given size.
+     */
+    public ConsoleWriter(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel ;
+        this.filling = ByteBuffer.allocateDirect(bufferSize) ;
+        this.writing = ByteBuffer.allocateDirect(bufferSize) ;
+        this.flusher = new Thread(this::flushPeriodically, "console-flusher") ;
+        this.flusher.setDaemon(true) ;
+        this.flusher.start() ;
+    }
+
+    /*
+     * Append <length> bytes of <bytes>, starting at <offset>, or drop them
+     * all if they do not fit in what is left of the buffer. Never waits
+     * for the channel. Throws the IOException, if any, that the last
+     * write to the channel failed with.
+     */
+    public synchronized void write(byte[] bytes, int offset, int length)
+            throws IOException {
+        if( failure != null ) {
+            IOException e = failure ;
+            failure = null ;
+            throw e ;
+        }
+        if( length > filling.remaining() ) {
+            dropped++ ;
+            return ;
+        }
+        filling.put(bytes, offset, length) ;
+        if( filling.position() >= filling.capacity() / 2 ) {
+            notifyAll() ;           // wake the flusher early
+        }
+    }
+
+    /*
+     * Write out everything buffered so far, waiting for the channel.
+     */
+    public void flush() throws IOException {
+        channelLock.lock() ;
+        try {
+            drain() ;
+        } finally {
+            channelLock.unlock() ;
+        }
+    }
+
+    /*
+     * Return the number of writes dropped because the buffer was full.
+     */
+    public synchronized long getDroppedCount() {
+        return dropped ;
+    }
+
+    /*
+     * Flush and stop the background flushing. The channel itself is left
+     * open, since it is usually standard output.
+     */
+    public void close() throws IOException {
+        open = false ;
+        flusher.interrupt() ;
+        flush() ;
+    }
+
+    /*
+     * As flush(), but give up if the channel is still busy with an
+     * earlier write after <millis> ms (e.g. a pipe nobody reads).
+     */
+    private void flush(long millis) throws IOException {
+        try {
+            if( !channelLock.tryLock(millis, TimeUnit.MILLISECONDS) ) {
+                return ;
+            }
+        } catch (InterruptedException e) {
+            return ;
+        }
+        try {
+            drain() ;
+        } finally {
+            channelLock.unlock() ;
+        }
+    }
+
+    /*
+     * Swap the filled buffer for the empty one and write it out. Called
+     * with channelLock held.
+     */
+    private void drain() throws IOException {
+        synchronized( this ) {
+            ByteBuffer full = filling ;
+            filling = writing ;
+            writing = full ;
+        }
+        writing.flip() ;
+        try {
+            while( writing.hasRemaining() ) {
+                channel.write(writing) ;
+            }
+        } finally {
+            writing.clear() ;
+        }
+    }
+
+    /*
+     * Body of the background thread.
+     */
+    private void flushPeriodically() {
+        while( open ) {
+            try {
+                synchronized( this ) {
+                    if( filling.position() < filling.capacity() / 2 ) {
+                        wait(FLUSH_MILLIS) ;
+                    }
+                }
+                flush() ;
+            } catch (InterruptedException e) {
+                return ;
+            } catch (IOException e) {
+                synchronized( this ) {
+                    failure = e ;   // reported by the next write
+                }
+            }
+        }
+    }
+}
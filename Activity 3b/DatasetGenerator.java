@@ -0,0 +1,236 @@
+/*
+ * Class for generating large synthetic datasets offline, far faster than
+ * running stations in real time. It uses the same trend models as the
+ * live station (KelvinTempSensor and Barometer, seeded by a Simulation)
+ * but skips WeatherStation and its Observers entirely.
+ *
+ * The (station, time range) space is split recursively over a fork/join
+ * pool down to single chunks of one station's samples. Each chunk is
+ * written to a binary columnar file of its own:
+ *
+ *      <dir>/station-<id>/chunk-<n>.col
+ *
+ *      int     MAGIC
+ *      int     station id
+ *      long    time of the first sample (ms)
+ *      long    period between samples (ms)
+ *      int     count
+ *      int[]   raw Kelvin readings     (count values)
+ *      double[] pressures, inches      (count values)
+ *
+ * Timestamps are implicit (first + i * period).
+ *
+ * NOTE: Chunks are generated independently so that they can run in
+ *       parallel: each one gets its own random stream (derived from the
+ *       seed, station and chunk number) and is warmed up for WARMUP
+ *       samples before recording, so it starts from a well-mixed state
+ *       rather than the sensors' default. The trend therefore restarts at
+ *       chunk boundaries; the output is the same on every run.
+ *
+ * Usage:
+ *      java DatasetGenerator <dir> <stations> <samples per station> [seed]
+ */
+import java.io.IOException ;
+import java.io.UncheckedIOException ;
+import java.nio.ByteBuffer ;
+import java.nio.channels.FileChannel ;
+import java.nio.file.Files ;
+import java.nio.file.Path ;
+import java.nio.file.Paths ;
+import java.nio.file.StandardOpenOption ;
+import java.util.SplittableRandom ;
+import java.util.concurrent.ForkJoinPool ;
+import java.util.concurrent.RecursiveAction ;
+import java.util.concurrent.atomic.LongAdder ;
+
+public class DatasetGenerator {
+    public static final int MAGIC = 0x57534331 ;        // "WSC1"
+    public static final int HEADER_SIZE = 28 ;
+    public static final int DEFAULT_CHUNK = 1 << 20 ;   // samples per chunk
+    private static final int WARMUP = 1000 ;
+
+    private final Simulation simulation ;
+    private final Path directory ;
+    private final long startMillis ;    // time of each station's first sample
+    private final long periodMillis ;   // time between samples
+    private final int chunkSamples ;
+
+    private final LongAdder samples = new LongAdder() ;
+    private final LongAdder bytes = new LongAdder() ;
+
+    public DatasetGenerator(Simulation simulation, Path directory,
+                            long startMillis, long periodMillis, int chunkSamples) {
+        if( periodMillis <= 0 || chunkSamples < 1 ) {
+            throw new IllegalArgumentException("period and chunk size must be > 0") ;
+        }
+        this.simulation = simulation ;
+        this.directory = directory ;
+        this.startMillis = startMillis ;
+        this.periodMillis = periodMillis ;
+        this.chunkSamples = chunkSamples ;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if( args.length < 3 ) {
+            System.err.println(
+                "usage: java DatasetGenerator <dir> <stations> <samples per station> [seed]") ;
+            System.exit(1) ;
+        }
+        Path dir = Paths.get(args[0]) ;
+        int stations = Integer.parseInt(args[1]) ;
+        long perStation = Long.parseLong(args[2]) ;
+        long seed = (args.length > 3) ? Long.parseLong(args[3]) : 0 ;
+
+        DatasetGenerator generator = new DatasetGenerator(new Simulation(seed),
+            dir, 0, 1000, DEFAULT_CHUNK) ;
+        long start = System.nanoTime() ;
+        generator.generate(stations, perStation) ;
+        double seconds = (System.nanoTime() - start) / 1e9 ;
+
+        System.out.printf("%d samples, %.1f MB in %.2f s: %.0f samples/s%n",
+            generator.getSampleCount(), generator.getByteCount() / 1e6,
+            seconds, generator.getSampleCount() / seconds) ;
+    }
+
+    /*
+     * Generate <samplesPerStation> samples for stations 0 .. stations-1
+     * on the common fork/join pool.
+     */
+    public void generate(int stations, long samplesPerStation) throws IOException {
+        Files.createDirectories(directory) ;
+        long chunks = (samplesPerStation + chunkSamples - 1) / chunkSamples ;
+        try {
+            ForkJoinPool.commonPool().invoke(
+                new Task(0, stations, 0, chunks, samplesPerStation)) ;
+        } catch (UncheckedIOException e) {
+            throw e.getCause() ;
+        }
+    }
+
+    public long getSampleCount() {
+        return samples.sum() ;
+    }
+
+    public long getByteCount() {
+        return bytes.sum() ;
+    }
+
+    /*
+     * Return the file holding a station's chunk.
+     */
+    public Path chunkFile(int station, long chunk) {
+        return directory.resolve("station-" + station).resolve("chunk-" + chunk + ".col") ;
+    }
+
+    /*
+     * Visit every sample of a chunk file, oldest first.
+     */
+    public static void scanChunk(Path file, ReadingLog.RecordVisitor visitor)
+            throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size()) ;
+            if( data.getInt(0) != MAGIC ) {
+                throw new IOException(file + " is not a chunk file") ;
+            }
+            int station = data.getInt(4) ;
+            long first = data.getLong(8) ;
+            long period = data.getLong(16) ;
+            int count = data.getInt(24) ;
+            int pressures = HEADER_SIZE + 4 * count ;
+
+            for( int i = 0 ; i < count ; i++ ) {
+                visitor.record(first + i * period, station,
+                    data.getInt(HEADER_SIZE + 4 * i), data.getDouble(pressures + 8 * i)) ;
+            }
+        }
+    }
+
+    /*
+     * Generate one station's chunk and write it out.
+     */
+    private void writeChunk(int station, long chunk, int count) throws IOException {
+        SplittableRandom stream = simulation.streamFor(station) ;
+        stream = new SplittableRandom(stream.nextLong() + chunk * 0x9E3779B97F4A7C15L) ;
+        KelvinTempSensor sensor = new KelvinTempSensor(stream.split()) ;
+        Barometer barometer = new Barometer(stream.split()) ;
+
+        for( int i = 0 ; i < WARMUP ; i++ ) {
+            sensor.reading() ;
+            barometer.pressure() ;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + 12 * count) ;
+        out.putInt(MAGIC)
+           .putInt(station)
+           .putLong(startMillis + chunk * chunkSamples * periodMillis)
+           .putLong(periodMillis)
+           .putInt(count) ;
+
+        int pressures = HEADER_SIZE + 4 * count ;
+        for( int i = 0 ; i < count ; i++ ) {
+            out.putInt(HEADER_SIZE + 4 * i, sensor.reading()) ;
+            out.putDouble(pressures + 8 * i, barometer.pressure()) ;
+        }
+        out.clear() ;
+
+        Path file = chunkFile(station, chunk) ;
+        Files.createDirectories(file.getParent()) ;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while( out.hasRemaining() ) {
+                channel.write(out) ;
+            }
+        }
+        samples.add(count) ;
+        bytes.add(out.capacity()) ;
+    }
+
+    /*
+     * A rectangle of the (station, chunk) space. It is split in half
+     * along whichever side is longer until a single chunk is left.
+     */
+    private final class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L ;
+
+        private final int firstStation ;
+        private final int endStation ;
+        private final long firstChunk ;
+        private final long endChunk ;
+        private final long perStation ;
+
+        Task(int firstStation, int endStation, long firstChunk, long endChunk,
+             long perStation) {
+            this.firstStation = firstStation ;
+            this.endStation = endStation ;
+            this.firstChunk = firstChunk ;
+            this.endChunk = endChunk ;
+            this.perStation = perStation ;
+        }
+
+        protected void compute() {
+            int stations = endStation - firstStation ;
+            long chunks = endChunk - firstChunk ;
+
+            if( stations <= 0 || chunks <= 0 ) {
+                return ;
+            }
+            if( stations == 1 && chunks == 1 ) {
+                long first = firstChunk * chunkSamples ;
+                int count = (int) Math.min(chunkSamples, perStation - first) ;
+                try {
+                    writeChunk(firstStation, firstChunk, count) ;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e) ;
+                }
+            } else if( stations >= chunks ) {
+                int middle = firstStation + stations / 2 ;
+                invokeAll(new Task(firstStation, middle, firstChunk, endChunk, perStation),
+                          new Task(middle, endStation, firstChunk, endChunk, perStation)) ;
+            } else {
+                long middle = firstChunk + chunks / 2 ;
+                invokeAll(new Task(firstStation, endStation, firstChunk, middle, perStation),
+                          new Task(firstStation, endStation, middle, endChunk, perStation)) ;
+            }
+        }
+    }
+}
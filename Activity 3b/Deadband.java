@@ -0,0 +1,71 @@
+/*
+ * Class for the conditions under which an Observer registered with
+ * WeatherStation.addObserver(Observer, Deadband) or addAsyncObserver(
+ * Observer, Deadband) wants to be told of a new Reading. Compared with the last Reading actually passed to that
+ * Observer, a new one is passed on only if
+ *
+ *      the temperature has moved by at least <celsius> degrees, or
+ *      the pressure has moved by at least <inches> inches of mercury,
+ *
+ * and at least <minIntervalMillis> ms have gone by. The first Reading
+ * is always passed on. A threshold of 0 is met by every Reading; one of
+ * Double.POSITIVE_INFINITY by none, which ignores that quantity:
+ *
+ *      new Deadband(0.5, 0.05, 0)                  // visible changes only
+ *      Deadband.change(0.5, Double.POSITIVE_INFINITY)   // temperature only
+ *      Deadband.interval(1000)                     // at most once a second
+ *
+ * A Deadband is immutable and may be shared by any number of Observers.
+ */
+public final class Deadband {
+    public static final Deadband NONE = new Deadband(0, 0, 0) ;    // every tick
+    // any change to what the UIs show (hundredths of a degree, any pressure)
+    public static final Deadband CHANGED = new Deadband(0.01, Double.MIN_VALUE, 0) ;
+
+    private final long kelvinHundredths ;   // temperature threshold, raw units
+    private final double inches ;           // pressure threshold
+    private final long minIntervalNanos ;
+
+    public Deadband(double celsius, double inches, long minIntervalMillis) {
+        if( celsius < 0 || inches < 0 || minIntervalMillis < 0 ) {
+            throw new IllegalArgumentException("thresholds must be >= 0") ;
+        }
+        this.kelvinHundredths = Math.round(celsius * 100) ;
+        this.inches = inches ;
+        this.minIntervalNanos = minIntervalMillis * 1_000_000 ;
+    }
+
+    /*
+     * Notify on a change of <celsius> degrees or <inches> of pressure.
+     */
+    public static Deadband change(double celsius, double inches) {
+        return new Deadband(celsius, inches, 0) ;
+    }
+
+    /*
+     * Notify at most once every <millis> ms.
+     */
+    public static Deadband interval(long millis) {
+        return new Deadband(0, 0, millis) ;
+    }
+
+    /*
+     * Return true if <reading> should be passed on, given the last one
+     * that was (a change in a 1 degree Celsius = a change of 1 Kelvin).
+     */
+    boolean allows(Reading last, Reading reading) {
+        if( last == null ) {
+            return true ;
+        }
+        if( reading.getNanoTime() - last.getNanoTime() < minIntervalNanos ) {
+            return false ;
+        }
+        return Math.abs((long) reading.getRawKelvin() - last.getRawKelvin()) >= kelvinHundredths
+            || Math.abs(reading.getPressureInches() - last.getPressureInches()) >= inches ;
+    }
+
+    public String toString() {
+        return String.format("Deadband[%.2f C, %.3f in, %d ms]",
+            kelvinHundredths / 100.0, inches, minIntervalNanos / 1_000_000) ;
+    }
+}
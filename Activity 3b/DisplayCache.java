@@ -0,0 +1,136 @@
+/*
+ * Class for a shared table of display text for temperatures, keyed by the
+ * raw sensor reading. The raw reading is an int in a bounded range
+ * (23315 .. 38315 for KelvinTempSensor), so rather than converting to
+ * Celsius and Fahrenheit and running "%6.2f" on every tick for every
+ * display, each UI looks the text up:
+ *
+ *      DisplayCache cache = DisplayCache.shared() ;
+ *      label.setText(cache.text(raw, DisplayCache.CELSIUS)) ;
+ *
+ * Each entry holds the Kelvin, Celsius and Fahrenheit text as a String,
+ * as chars and as (ASCII) bytes, formatted exactly as "%6.2f" formats
+ * Reading's getKelvin(), getCelsius() and getFahrenheit() in the default
+ * locale. Entries are built the first time they are asked for, or all
+ * at once by prefill(). Readings outside the range are formatted on each
+ * call and not kept.
+ *
+ * Entries are immutable once built, so the cache may be used from any
+ * thread without locking (two threads may both build an entry; either
+ * copy is kept).
+ */
+import java.util.Locale ;
+
+public class DisplayCache {
+    public static final int KELVIN = 0 ;
+    public static final int CELSIUS = 1 ;
+    public static final int FAHRENHEIT = 2 ;
+
+    public static final int MIN_RAW = 23315 ;   // -40 C, KelvinTempSensor's minimum
+    public static final int MAX_RAW = 38315 ;   // 110 C, KelvinTempSensor's maximum
+
+    private static final DisplayCache SHARED = new DisplayCache(MIN_RAW, MAX_RAW) ;
+
+    /*
+     * The text of one raw reading in each unit. The arrays are never
+     * modified after construction.
+     */
+    private static final class Entry {
+        final String[] text ;
+        final char[][] chars ;
+        final byte[][] bytes ;
+
+        Entry(int raw) {
+            Reading reading = new Reading(raw, 0.0, 0, 0, 0) ;
+            text = new String[] {
+                format(reading.getKelvin()),
+                format(reading.getCelsius()),
+                format(reading.getFahrenheit()) } ;
+            chars = new char[text.length][] ;
+            bytes = new byte[text.length][] ;
+            for( int unit = 0 ; unit < text.length ; unit++ ) {
+                chars[unit] = text[unit].toCharArray() ;
+                bytes[unit] = new byte[chars[unit].length] ;
+                for( int i = 0 ; i < chars[unit].length ; i++ ) {
+                    bytes[unit][i] = (byte) chars[unit][i] ;
+                }
+            }
+        }
+    }
+
+    private final int min ;
+    private final int max ;
+    private final Entry[] entries ;
+
+    /*
+     * Return the cache every UI shares.
+     */
+    public static DisplayCache shared() {
+        return SHARED ;
+    }
+
+    /*
+     * Create a cache for raw readings <min> .. <max>.
+     */
+    public DisplayCache(int min, int max) {
+        if( max < min ) {
+            throw new IllegalArgumentException("max < min") ;
+        }
+        this.min = min ;
+        this.max = max ;
+        entries = new Entry[max - min + 1] ;
+    }
+
+    /*
+     * Build every entry now, e.g. at startup, so no tick pays for it.
+     */
+    public void prefill() {
+        for( int raw = min ; raw <= max ; raw++ ) {
+            entry(raw) ;
+        }
+    }
+
+    /*
+     * Return the text of the raw reading in <unit> (KELVIN, CELSIUS or
+     * FAHRENHEIT).
+     */
+    public String text(int raw, int unit) {
+        return entry(raw).text[unit] ;
+    }
+
+    /*
+     * Copy the text of the raw reading in <unit> into <out> at <at>,
+     * as chars. Returns the offset just past it.
+     */
+    public int copyChars(int raw, int unit, char[] out, int at) {
+        char[] chars = entry(raw).chars[unit] ;
+        System.arraycopy(chars, 0, out, at, chars.length) ;
+        return at + chars.length ;
+    }
+
+    /*
+     * Copy the text of the raw reading in <unit> into <out> at <at>,
+     * as bytes (only meaningful when the locale's digits are ASCII).
+     * Returns the offset just past it.
+     */
+    public int copyBytes(int raw, int unit, byte[] out, int at) {
+        byte[] bytes = entry(raw).bytes[unit] ;
+        System.arraycopy(bytes, 0, out, at, bytes.length) ;
+        return at + bytes.length ;
+    }
+
+    private Entry entry(int raw) {
+        if( raw < min || raw > max ) {
+            return new Entry(raw) ;
+        }
+        Entry entry = entries[raw - min] ;
+        if( entry == null ) {
+            entries[raw - min] = entry = new Entry(raw) ;
+        }
+        return entry ;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.getDefault(Locale.Category.FORMAT), "%6.2f", value) ;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Class that formats a Reading the way TextUI prints it,
+ *
+ *      "%nTemperature: %6.2f C %6.2f F %6.2f K%n" +
+ *      "Pressure:    %6.2f inches %6.2f mbar%n"
+ *
+ * but writes the characters straight into a caller-supplied byte array
+ * instead of going through String.format. The temperatures are copied
+ * from the shared DisplayCache, and the pressures are rounded half-up to
+ * hundredths, so the output is byte for byte the same as printf's, and
+ * formatting a reading in the DisplayCache range allocates nothing.
+ *
+ * NOTE: The rare pressure value that sits within rounding error of a
+ *       half-hundredth, and any locale whose digits or decimal point are
+ *       not ASCII, are handed to String.format so the output still matches.
+ */
+import java.nio.charset.StandardCharsets ;
+import java.text.DecimalFormatSymbols ;
+import java.util.Locale ;
+
+public class FixedPointFormatter {
+    public static final String FORMAT =
+        "%nTemperature: %6.2f C %6.2f F %6.2f K%n" +
+        "Pressure:    %6.2f inches %6.2f mbar%n" ;
+
+    public static final int MAX_LENGTH = 256 ;  // more than any formatted reading
+
+    private static final int WIDTH = 6 ;        // field width of %6.2f
+    private static final double TIE = 1e-6 ;    // too close to .5 to round
+
+    private static final byte[] TEMPERATURE = ascii("Temperature: ") ;
+    private static final byte[] C = ascii(" C ") ;
+    private static final byte[] F = ascii(" F ") ;
+    private static final byte[] K = ascii(" K") ;
+    private static final byte[] PRESSURE = ascii("Pressure:    ") ;
+    private static final byte[] INCHES = ascii(" inches ") ;
+    private static final byte[] MBAR = ascii(" mbar") ;
+
+    private final byte[] newline = ascii(System.lineSeparator()) ;
+    private final boolean fast ;    // locale prints plain ASCII numbers
+    private final DisplayCache cache = DisplayCache.shared() ;
+
+    public FixedPointFormatter() {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(
+            Locale.getDefault(Locale.Category.FORMAT)) ;
+        fast = symbols.getDecimalSeparator() == '.'
+            && symbols.getZeroDigit() == '0'
+            && symbols.getMinusSign() == '-' ;
+    }
+
+    /*
+     * Format the reading into <out> (at least MAX_LENGTH bytes) and
+     * return the number of bytes written.
+     */
+    public int format(Reading reading, byte[] out) {
+        if( !fast ) {
+            return slow(reading, out) ;
+        }
+
+        int kelvin = reading.getRawKelvin() ;
+
+        int at = 0 ;
+        at = put(newline, out, at) ;
+        at = put(TEMPERATURE, out, at) ;
+        at = cache.copyBytes(kelvin, DisplayCache.CELSIUS, out, at) ;
+        at = put(C, out, at) ;
+        at = cache.copyBytes(kelvin, DisplayCache.FAHRENHEIT, out, at) ;
+        at = put(F, out, at) ;
+        at = cache.copyBytes(kelvin, DisplayCache.KELVIN, out, at) ;
+        at = put(K, out, at) ;
+        at = put(newline, out, at) ;
+        at = put(PRESSURE, out, at) ;
+        at = fixed(reading.getPressureInches(), out, at) ;
+        if( at < 0 ) {
+            return slow(reading, out) ;
+        }
+        at = put(INCHES, out, at) ;
+        at = fixed(reading.getPressureMillibars(), out, at) ;
+        if( at < 0 ) {
+            return slow(reading, out) ;
+        }
+        at = put(MBAR, out, at) ;
+        at = put(newline, out, at) ;
+        return at ;
+    }
+
+    /*
+     * Write <value> as %6.2f. Returns the new offset, or -1 if the value
+     * cannot be rounded safely without String.format.
+     */
+    private static int fixed(double value, byte[] out, int at) {
+        if( Double.isNaN(value) || Double.isInfinite(value)
+                || Math.abs(value) >= 1e15 ) {
+            return -1 ;
+        }
+        double scaled = Math.abs(value) * 100.0 ;
+        double floor = Math.floor(scaled) ;
+        if( Math.abs(scaled - floor - 0.5) < TIE ) {
+            return -1 ;
+        }
+        long hundredths = (long) floor + (scaled - floor > 0.5 ? 1 : 0) ;
+        boolean negative = Double.doubleToRawLongBits(value) < 0 ;
+        return fixed(hundredths, negative, out, at) ;
+    }
+
+    /*
+     * Write a non-negative number of hundredths as %6.2f, with a leading
+     * minus sign if <negative>, right-justified to WIDTH characters.
+     */
+    private static int fixed(long hundredths, boolean negative, byte[] out, int at) {
+        int digits = 3 ;                                // at least "0.00"
+        for( long rest = hundredths / 1000 ; rest > 0 ; rest /= 10 ) {
+            digits++ ;
+        }
+        int length = digits + 1 + (negative ? 1 : 0) ;  // + point and sign
+
+        for( int pad = length ; pad < WIDTH ; pad++ ) {
+            out[at++] = ' ' ;
+        }
+        if( negative ) {
+            out[at++] = '-' ;
+        }
+
+        int end = at + digits + 1 ;
+        int pos = end ;
+        long rest = hundredths ;
+        for( int i = 0 ; i < digits ; i++ ) {
+            if( i == 2 ) {
+                out[--pos] = '.' ;
+            }
+            out[--pos] = (byte) ('0' + rest % 10) ;
+            rest /= 10 ;
+        }
+        return end ;
+    }
+
+    private static int put(byte[] bytes, byte[] out, int at) {
+        System.arraycopy(bytes, 0, out, at, bytes.length) ;
+        return at + bytes.length ;
+    }
+
+    /*
+     * Format with String.format, for the cases the fast path declines.
+     */
+    private static int slow(Reading reading, byte[] out) {
+        byte[] text = String.format(FORMAT,
+            reading.getCelsius(),
+            reading.getFahrenheit(),
+            reading.getKelvin(),
+            reading.getPressureInches(),
+            reading.getPressureMillibars()).getBytes() ;
+        int length = Math.min(text.length, out.length) ;
+        System.arraycopy(text, 0, out, 0, length) ;
+        return length ;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII) ;
+    }
+}
@@ -10,9 +10,9 @@
  * 65535 = 655.35 degrees Kelvin = 382.20 degrees Celsius
  */
 
-import java.util.Random ;   // to simulate random temperature fluctuations.
+import java.util.SplittableRandom ; // to simulate random temperature fluctuations.
 
-public class KelvinTempSensor {
+public class KelvinTempSensor implements TemperatureSensor {
     /*
      * Min and max readings this sensor will actually report:
      *    23315 =  -40 C
@@ -26,12 +26,23 @@ public class KelvinTempSensor {
 
     private int currentReading ;         // current sensor reading
     private boolean increasing = true ;  // TRUE if temperature tending up
-    private Random rand = new Random() ; // simulate random temp, changes.
+    private final SplittableRandom rand ; // simulate random changes
 
     /*
-     * Initialize the sensor to the DEFAULT value.
+     * Initialize the sensor to the DEFAULT value, with an unseeded
+     * random source.
      */
     public KelvinTempSensor() {
+        this(new SplittableRandom()) ;
+    }
+
+    /*
+     * Initialize the sensor to the DEFAULT value, drawing its random
+     * changes from <rand> (see Simulation for reproducible runs). The
+     * stream must not be shared with another sensor.
+     */
+    public KelvinTempSensor(SplittableRandom rand) {
+        this.rand = rand ;
         currentReading = DEFAULT ;
     }
 
@@ -0,0 +1,126 @@
+/*
+ * Class for a histogram of latencies in nanoseconds. Buckets are
+ * log-linear: every power of two is split into 16 equal sub-buckets, so
+ * any recorded value is known to within about 6%, from 1 ns to centuries,
+ * in a fixed 960-slot array.
+ *
+ * Recording is a few shifts and one array store, and allocates nothing
+ * (the bucket array itself is only created on the first record, so an
+ * unused histogram costs a few bytes).
+ *
+ * Each histogram should be recorded into by one thread at a time; it can
+ * be read from any thread (readers may see a count or two out of date).
+ */
+import java.util.concurrent.atomic.AtomicLongArray ;
+
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4 ;
+    private static final int SUB_COUNT = 1 << SUB_BITS ;        // 16
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT ;
+
+    private volatile AtomicLongArray counts ;   // created on first record
+    private volatile long count = 0 ;
+    private volatile long total = 0 ;   // sum of recorded values
+    private volatile long max = 0 ;
+
+    /*
+     * Record one latency. Negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos) ;
+        int index = index(value) ;
+        AtomicLongArray c = counts ;
+        if( c == null ) {
+            counts = c = new AtomicLongArray(BUCKETS) ;
+        }
+
+        c.lazySet(index, c.get(index) + 1) ;
+        count++ ;
+        total += value ;
+        if( value > max ) {
+            max = value ;
+        }
+    }
+
+    public long getCount() {
+        return count ;
+    }
+
+    public long getMax() {
+        return max ;
+    }
+
+    public double getMean() {
+        long n = count ;
+        return n == 0 ? 0.0 : (double) total / n ;
+    }
+
+    /*
+     * Return the latency (ns) at or below which <percentile> percent of
+     * the recorded values fall, or 0 if nothing has been recorded.
+     */
+    public long getPercentile(double percentile) {
+        long n = count ;
+        AtomicLongArray c = counts ;
+        if( n == 0 || c == null ) {
+            return 0 ;
+        }
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100.0)) ;
+        long seen = 0 ;
+
+        for( int i = 0 ; i < BUCKETS ; i++ ) {
+            seen += c.get(i) ;
+            if( seen >= rank ) {
+                return Math.min(highest(i), max) ;
+            }
+        }
+        return max ;
+    }
+
+    /*
+     * Forget everything recorded so far.
+     */
+    public void reset() {
+        AtomicLongArray c = counts ;
+        for( int i = 0 ; c != null && i < BUCKETS ; i++ ) {
+            c.set(i, 0) ;
+        }
+        count = 0 ;
+        total = 0 ;
+        max = 0 ;
+    }
+
+    /*
+     * One line summary, in microseconds.
+     */
+    public String summary() {
+        return String.format(
+            "count=%d mean=%.1fus p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+            count, getMean() / 1e3, getPercentile(50) / 1e3,
+            getPercentile(99) / 1e3, getPercentile(99.9) / 1e3, max / 1e3) ;
+    }
+
+    /*
+     * Map a value to its bucket.
+     */
+    private static int index(long value) {
+        if( value < SUB_COUNT ) {
+            return (int) value ;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS ;
+        int sub = (int) (value >>> shift) - SUB_COUNT ;
+        return (shift + 1) * SUB_COUNT + sub ;
+    }
+
+    /*
+     * Return the largest value that maps to the bucket.
+     */
+    private static long highest(int index) {
+        if( index < SUB_COUNT ) {
+            return index ;
+        }
+        int shift = index / SUB_COUNT - 1 ;
+        long sub = index % SUB_COUNT + SUB_COUNT ;
+        return ((sub + 1) << shift) - 1 ;
+    }
+}
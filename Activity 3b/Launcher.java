@@ -0,0 +1,252 @@
+/*
+ * Non-interactive entry point for running weather stations, e.g. in a
+ * container, configured from the command line and/or a properties file
+ * instead of App's prompt:
+ *
+ *      java Launcher [--config=<file>] [--<key>=<value> ...]
+ *
+ * Keys (command line values override the file's):
+ *
+ *      stations    number of stations, ids 0 .. n-1           (1)
+ *      period      sampling period in ms, fractions allowed    (1000)
+ *      threads     scheduler threads                           (processors)
+ *      seed        seed for reproducible simulated sensors     (unseeded)
+ *      sinks       comma separated, any of                     (text)
+ *                      text    print readings (TextUI)
+ *                      swing   a SwingUI window per station
+ *                      log     append to a ReadingLog
+ *                      http    serve readings (ReadingServer)
+ *                      sse     stream readings (SseBroadcaster)
+ *                      none    sample only
+ *      log.dir     directory of the ReadingLog                 (readings)
+ *      http.port   port of the ReadingServer                   (8383)
+ *      history     seconds of readings the http sink keeps     (3600)
+ *                  per station, at most a week of 1 Hz samples
+ *                  (20 bytes a sample, so an hour at 1 Hz is
+ *                  some 70 KB a station)
+ *      sse.port    port of the SseBroadcaster                  (8384)
+ *      jmx         true to publish each station's StationMetrics (false)
+ *                  as an MBean, WeatherStation:type=StationMetrics,id=<n>
+ *      metrics.interval  ms between StationMetrics reports      (0, none)
+ *                  printed to standard error by a MetricsReporter
+ *
+ * Swing (and so AWT) is only loaded, by name, when the swing sink is
+ * asked for, so a headless launch loads none of their classes. How soon
+ * the first sample is taken depends on the machine and on the sinks,
+ * each of which loads and starts more (the http sink most); the time to
+ * it, from the start of the JVM process and from main(), is printed to
+ * standard error. Startup can be cut further with an AppCDS archive (the
+ * classes must then come from a jar):
+ *
+ *      java -XX:ArchiveClassesAtExit=launcher.jsa -cp ws.jar Launcher ...
+ *      java -XX:SharedArchiveFile=launcher.jsa -cp ws.jar Launcher ...
+ */
+import java.io.FileInputStream ;
+import java.io.IOException ;
+import java.io.InputStream ;
+import java.lang.reflect.InvocationTargetException ;
+import java.net.InetAddress ;
+import java.net.InetSocketAddress ;
+import java.nio.file.Paths ;
+import java.time.Instant ;
+import java.util.Arrays ;
+import java.util.HashSet ;
+import java.util.List ;
+import java.util.Observable ;
+import java.util.Observer ;
+import java.util.Properties ;
+import java.util.Set ;
+
+import javax.management.JMException ;
+
+public class Launcher {
+    private static final List<String> SINKS =
+        Arrays.asList("text", "swing", "log", "http", "sse", "none") ;
+
+    private static final long MAIN_NANOS = System.nanoTime() ;    // ~ main() entered
+
+    private final Properties config ;
+
+    public Launcher(Properties config) {
+        this.config = config ;
+    }
+
+    public static void main(String[] args) {
+        try {
+            new Launcher(configure(args)).launch() ;
+        } catch (InvocationTargetException e) {
+            System.err.println("Launcher: " + e.getCause()) ;     // e.g. no display
+            System.exit(2) ;
+        } catch (IllegalArgumentException | IOException | ReflectiveOperationException
+                 | JMException e) {
+            System.err.println("Launcher: " + e.getMessage()) ;
+            System.exit(2) ;
+        }
+    }
+
+    /*
+     * Build the configuration from a --config file, if any, overridden
+     * by the other --key=value arguments.
+     */
+    public static Properties configure(String[] args) throws IOException {
+        Properties config = new Properties() ;
+        Properties overrides = new Properties() ;
+
+        for( String arg : args ) {
+            int eq = arg.indexOf('=') ;
+            if( !arg.startsWith("--") || eq < 0 ) {
+                throw new IllegalArgumentException("expected --key=value, got " + arg) ;
+            }
+            String key = arg.substring(2, eq) ;
+            String value = arg.substring(eq + 1) ;
+            if( key.equals("config") ) {
+                try (InputStream in = new FileInputStream(value)) {
+                    config.load(in) ;
+                }
+            } else {
+                overrides.setProperty(key, value) ;
+            }
+        }
+        config.putAll(overrides) ;
+        return config ;
+    }
+
+    /*
+     * Create the stations and sinks, take a first sample from each
+     * station and start the scheduler.
+     */
+    public StationScheduler launch() throws IOException, ReflectiveOperationException,
+                                           JMException {
+        int count = Integer.parseInt(config.getProperty("stations", "1")) ;
+        double periodMillis = Double.parseDouble(config.getProperty("period", "1000")) ;
+        int threads = Integer.parseInt(config.getProperty("threads",
+            Integer.toString(Runtime.getRuntime().availableProcessors()))) ;
+        String seed = config.getProperty("seed") ;
+        boolean jmx = Boolean.parseBoolean(config.getProperty("jmx", "false")) ;
+        long reportMillis = Long.parseLong(config.getProperty("metrics.interval", "0")) ;
+        Set<String> sinks = new HashSet<>() ;
+        for( String sink : config.getProperty("sinks", "text").split(",") ) {
+            sinks.add(sink.trim()) ;
+        }
+
+        if( count < 1 || periodMillis <= 0 || threads < 1 ) {
+            throw new IllegalArgumentException("stations, period and threads must be > 0") ;
+        }
+        if( reportMillis < 0 ) {
+            throw new IllegalArgumentException("metrics.interval must be >= 0") ;
+        }
+        for( String sink : sinks ) {
+            if( !SINKS.contains(sink) ) {
+                throw new IllegalArgumentException("unknown sink " + sink + ", expected one of " + SINKS) ;
+            }
+        }
+
+        Simulation simulation = (seed == null) ? null : new Simulation(Long.parseLong(seed)) ;
+        WeatherStation[] stations = new WeatherStation[count] ;
+        for( int id = 0 ; id < count ; id++ ) {
+            stations[id] = (simulation == null) ? new WeatherStation(id) : simulation.newStation(id) ;
+            stations[id].setPeriodNanos((long) (periodMillis * 1_000_000)) ;
+        }
+
+        if( sinks.contains("text") ) {
+            for( WeatherStation station : stations ) {
+                new TextUI(station) ;
+            }
+        }
+        if( sinks.contains("log") ) {
+            ReadingLog log = new ReadingLog(Paths.get(config.getProperty("log.dir", "readings"))) ;
+            for( WeatherStation station : stations ) {
+                station.addAsyncObserver(log) ;
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    log.close() ;
+                } catch (IOException e) {}  // ignore exceptions
+            })) ;
+        }
+        if( sinks.contains("http") ) {
+            double seconds = Double.parseDouble(config.getProperty("history", "3600")) ;
+            if( seconds <= 0 ) {
+                throw new IllegalArgumentException("history must be > 0") ;
+            }
+            int samples = (int) Math.max(1, Math.min(ReadingHistory.ONE_WEEK_AT_1HZ,
+                Math.ceil(seconds * 1000 / periodMillis))) ;
+            ReadingServer server = new ReadingServer(address("http.port",
+                ReadingServer.DEFAULT_PORT), Runtime.getRuntime().availableProcessors()) ;
+            for( WeatherStation station : stations ) {
+                ReadingHistory history = new ReadingHistory(samples) ;
+                station.addAsyncObserver(history) ;
+                server.addStation(station, history) ;
+            }
+            server.start() ;
+        }
+        if( sinks.contains("sse") ) {
+            SseBroadcaster sse = new SseBroadcaster(address("sse.port", 8384),
+                SseBroadcaster.DEFAULT_MAX_QUEUED_BYTES) ;
+            for( WeatherStation station : stations ) {
+                sse.addStation(station) ;
+            }
+            sse.start() ;
+        }
+        if( sinks.contains("swing") ) {
+            // by name, so Swing and AWT are only loaded when asked for
+            Class<?> swing = Class.forName("SwingUI") ;
+            for( WeatherStation station : stations ) {
+                swing.getConstructor(WeatherStation.class).newInstance(station) ;
+            }
+        }
+
+        if( jmx ) {
+            for( WeatherStation station : stations ) {
+                station.getMetrics().register() ;
+            }
+        }
+        if( reportMillis > 0 ) {
+            MetricsReporter reporter = new MetricsReporter(System.err, reportMillis) ;
+            for( WeatherStation station : stations ) {
+                reporter.add(station) ;
+            }
+            reporter.start() ;
+        }
+
+        FirstSample first = new FirstSample() ;
+        stations[0].addObserver(first) ;
+
+        StationScheduler scheduler = new StationScheduler(threads) ;
+        for( WeatherStation station : stations ) {
+            station.tick() ;
+            scheduler.start(station) ;
+        }
+        return scheduler ;
+    }
+
+    private InetSocketAddress address(String key, int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(),
+            Integer.parseInt(config.getProperty(key, Integer.toString(port)))) ;
+    }
+
+    /*
+     * Observer that reports how long after the JVM process started, and
+     * after main() was entered, the first sample was taken, then removes
+     * itself.
+     */
+    private static final class FirstSample implements Observer {
+        private boolean done = false ;
+
+        public void update(Observable obs, Object arg) {
+            if( done || !(arg instanceof Reading) ) {
+                return ;
+            }
+            done = true ;
+            obs.deleteObserver(this) ;
+
+            Reading reading = (Reading) arg ;
+            long sinceMain = (reading.getNanoTime() - MAIN_NANOS) / 1_000_000 ;
+            Instant start = ProcessHandle.current().info().startInstant().orElse(null) ;
+            String sinceStart = (start == null) ? "?" :
+                Long.toString(reading.getTimestamp() - start.toEpochMilli()) ;
+            System.err.println("first sample " + sinceStart + " ms after process start, "
+                + sinceMain + " ms after main") ;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Class that prints the StationMetrics report of a set of stations at a
+ * fixed interval, on a daemon thread of its own.
+ */
+import java.io.PrintStream ;
+import java.util.List ;
+import java.util.concurrent.CopyOnWriteArrayList ;
+
+public class MetricsReporter implements Runnable {
+    private final List<WeatherStation> stations = new CopyOnWriteArrayList<>() ;
+    private final PrintStream out ;
+    private final long intervalMillis ;
+    private final Thread thread ;
+
+    /*
+     * Print to <out> every <intervalMillis> ms once started.
+     */
+    public MetricsReporter(PrintStream out, long intervalMillis) {
+        this.out = out ;
+        this.intervalMillis = intervalMillis ;
+        this.thread = new Thread(this, "metrics-reporter") ;
+        this.thread.setDaemon(true) ;
+    }
+
+    public void add(WeatherStation station) {
+        stations.add(station) ;
+    }
+
+    public void remove(WeatherStation station) {
+        stations.remove(station) ;
+    }
+
+    public void start() {
+        thread.start() ;
+    }
+
+    public void stop() {
+        thread.interrupt() ;
+    }
+
+    public void run() {
+        while( true ) {
+            try {
+                Thread.sleep(intervalMillis) ;
+            } catch (InterruptedException e) {
+                return ;
+            }
+            for( WeatherStation station : stations ) {
+                out.print(station.getMetrics().report()) ;
+            }
+            out.flush() ;
+        }
+    }
+}
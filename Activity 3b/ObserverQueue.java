@@ -0,0 +1,212 @@
+/*
+ * Class that puts a bounded queue between an Observable and one Observer,
+ * so that an Observer that stalls (a SwingUI whose EDT is busy, a remote
+ * sink on a slow network) can neither hold up the sensing loop nor make
+ * memory grow without limit. It is itself an Observer: register it in
+ * place of the one it wraps,
+ *
+ *      ObserverQueue queue = new ObserverQueue(sink, 64, ObserverQueue.Policy.DROP_OLDEST) ;
+ *      station.addObserver(queue) ;
+ *      ...
+ *      station.deleteObserver(queue) ;
+ *      queue.close() ;
+ *
+ * and a daemon thread of its own passes the queued updates on. When the
+ * queue is full, the Policy decides what happens to a new update:
+ *
+ *      LATEST          it replaces the one waiting (the queue holds one
+ *                      update, whatever the capacity; for Observers that
+ *                      only show the current value)
+ *      DROP_OLDEST     the oldest waiting update is dropped to make room
+ *      DROP_NEWEST     the new update is dropped
+ *      BLOCK_TIMEOUT   the notifying thread waits up to the timeout for
+ *                      room, then drops the new update
+ *
+ * Every update lost is counted, and the current and greatest depths of
+ * the queue are kept, so a falling-behind Observer can be spotted.
+ */
+import java.util.Observable ;
+import java.util.Observer ;
+import java.util.concurrent.TimeUnit ;
+import java.util.concurrent.locks.Condition ;
+import java.util.concurrent.locks.ReentrantLock ;
+
+public class ObserverQueue implements Observer, AutoCloseable {
+    public enum Policy { LATEST, DROP_OLDEST, DROP_NEWEST, BLOCK_TIMEOUT }
+
+    private final Observer observer ;
+    private final Policy policy ;
+    private final long timeoutNanos ;   // BLOCK_TIMEOUT only
+    private final Thread thread ;
+
+    // ring of waiting updates; guarded by lock
+    private final Observable[] sources ;
+    private final Object[] args ;
+    private int head = 0 ;              // oldest waiting update
+    private int size = 0 ;
+
+    private final ReentrantLock lock = new ReentrantLock() ;
+    private final Condition notEmpty = lock.newCondition() ;
+    private final Condition notFull = lock.newCondition() ;
+
+    private volatile boolean running = true ;
+    private volatile long dropped = 0 ;
+    private volatile long delivered = 0 ;
+    private volatile int maxDepth = 0 ;
+
+    /*
+     * Queue up to <capacity> updates for <observer>, applying <policy>
+     * when full. BLOCK_TIMEOUT waits at most 10 ms.
+     */
+    public ObserverQueue(Observer observer, int capacity, Policy policy) {
+        this(observer, capacity, policy, 10) ;
+    }
+
+    /*
+     * As above, with the BLOCK_TIMEOUT wait in milliseconds.
+     */
+    public ObserverQueue(Observer observer, int capacity, Policy policy,
+                         long timeoutMillis) {
+        if( capacity < 1 ) {
+            throw new IllegalArgumentException("capacity must be >= 1") ;
+        }
+        if( policy == Policy.LATEST ) {
+            capacity = 1 ;
+        }
+        this.observer = observer ;
+        this.policy = policy ;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis) ;
+        sources = new Observable[capacity] ;
+        args = new Object[capacity] ;
+
+        thread = new Thread(this::drain, "queue-" + observer.getClass().getSimpleName()) ;
+        thread.setDaemon(true) ;
+        thread.start() ;
+    }
+
+    /*
+     * Queue the update for the Observer, as the Policy allows.
+     */
+    public void update(Observable obs, Object arg) {
+        lock.lock() ;
+        try {
+            if( size == args.length ) {
+                switch( policy ) {
+                case LATEST:
+                case DROP_OLDEST:
+                    head = (head + 1) % args.length ;
+                    size-- ;
+                    dropped++ ;
+                    break ;
+                case DROP_NEWEST:
+                    dropped++ ;
+                    return ;
+                case BLOCK_TIMEOUT:
+                    long wait = timeoutNanos ;
+                    while( size == args.length && wait > 0 && running ) {
+                        wait = notFull.awaitNanos(wait) ;
+                    }
+                    if( size == args.length ) {
+                        dropped++ ;
+                        return ;
+                    }
+                    break ;
+                }
+            }
+            int tail = (head + size) % args.length ;
+            sources[tail] = obs ;
+            args[tail] = arg ;
+            if( ++size > maxDepth ) {
+                maxDepth = size ;
+            }
+            notEmpty.signal() ;
+        } catch (InterruptedException e) {
+            dropped++ ;
+            Thread.currentThread().interrupt() ;
+        } finally {
+            lock.unlock() ;
+        }
+    }
+
+    /*
+     * Stop passing updates on; any still queued are discarded.
+     */
+    public void close() {
+        running = false ;
+        thread.interrupt() ;
+    }
+
+    public Observer getObserver() {
+        return observer ;
+    }
+
+    public Policy getPolicy() {
+        return policy ;
+    }
+
+    public int getCapacity() {
+        return args.length ;
+    }
+
+    /*
+     * Return the number of updates waiting.
+     */
+    public int getDepth() {
+        lock.lock() ;
+        try {
+            return size ;
+        } finally {
+            lock.unlock() ;
+        }
+    }
+
+    public int getMaxDepth() {
+        return maxDepth ;
+    }
+
+    public long getDroppedCount() {
+        return dropped ;
+    }
+
+    public long getDeliveredCount() {
+        return delivered ;
+    }
+
+    public String toString() {
+        return String.format("%s[%s depth=%d/%d max=%d dropped=%d delivered=%d]",
+            observer.getClass().getSimpleName(), policy, getDepth(), args.length,
+            maxDepth, dropped, delivered) ;
+    }
+
+    /*
+     * Body of the delivering thread.
+     */
+    private void drain() {
+        while( running ) {
+            Observable obs ;
+            Object arg ;
+            lock.lock() ;
+            try {
+                while( size == 0 ) {
+                    notEmpty.await() ;
+                }
+                obs = sources[head] ;
+                arg = args[head] ;
+                sources[head] = null ;
+                args[head] = null ;
+                head = (head + 1) % args.length ;
+                size-- ;
+                notFull.signal() ;
+            } catch (InterruptedException e) {
+                continue ;      // close() or a spurious interrupt
+            } finally {
+                lock.unlock() ;
+            }
+
+            try {
+                observer.update(obs, arg) ;
+            } catch (Exception e) {}    // ignore exceptions
+            delivered++ ;
+        }
+    }
+}
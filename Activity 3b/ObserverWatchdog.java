@@ -0,0 +1,247 @@
+/*
+ * Class that guards a station's synchronous Observers against one that
+ * is slow or blocks (e.g. a TextUI writing to a full pipe), which would
+ * otherwise hold up every tick of the station and every other Observer.
+ *
+ * Observers are registered through the watchdog instead of directly,
+ *
+ *      ObserverWatchdog watchdog = new ObserverWatchdog(System.err, 500, 5,
+ *          ObserverWatchdog.Action.ISOLATE) ;
+ *      watchdog.watch(station, observer) ;
+ *      watchdog.start() ;
+ *
+ * and each update() they are given is timed. An update that takes longer
+ * than the budget is a strike; one within budget forgives a strike, so
+ * only an Observer that is over budget more often than not builds up
+ * strikes. On reaching the limit it is quarantined: taken off the
+ * station and either
+ *
+ *      ISOLATE     re-registered behind an ObserverQueue of its own
+ *                  (DROP_OLDEST), so it is updated on another thread and
+ *                  can only fall behind itself, or
+ *      DETACH      dropped.
+ *
+ * A monitor thread also looks at the updates in progress. One that has
+ * run for more than <maxStrikes> budgets is taken to be stuck, and the
+ * Observer is quarantined at once, so that later ticks skip it. (The
+ * stuck call itself cannot be cut short; if the Observer is isolated, it
+ * only starts getting queued updates once that call returns.)
+ *
+ * Every quarantine is reported to the Listener, by default as a line on
+ * the PrintStream given.
+ */
+import java.io.PrintStream ;
+import java.util.List ;
+import java.util.Observable ;
+import java.util.Observer ;
+import java.util.concurrent.CopyOnWriteArrayList ;
+import java.util.concurrent.TimeUnit ;
+import java.util.concurrent.atomic.AtomicLong ;
+
+public class ObserverWatchdog implements Runnable {
+    public enum Action { ISOLATE, DETACH }
+
+    public static final int ISOLATION_CAPACITY = 64 ;   // updates queued
+
+    /*
+     * Interface for being told about quarantined Observers.
+     */
+    public interface Listener {
+        /*
+         * <observer> of <station> was quarantined after <strikes> strikes;
+         * its slowest update took <nanos> ns (or has so far, if <stuck>).
+         */
+        void quarantined(WeatherStation station, Observer observer, Action action,
+                         int strikes, long nanos, boolean stuck) ;
+    }
+
+    /*
+     * The wrapper registered with the station in place of an Observer.
+     */
+    private final class Watched implements Observer {
+        final WeatherStation station ;
+        final Observer observer ;
+        volatile long startedAt = 0 ;   // nanoTime of the update running, or 0
+        volatile boolean quarantined = false ;
+        int strikes = 0 ;               // ticking thread only
+        long slowest = 0 ;
+        volatile boolean isolatePending = false ;   // isolate once idle
+        boolean isolated = false ;      // guarded by this Watched
+        ObserverQueue queue ;           // once isolated; likewise
+
+        Watched(WeatherStation station, Observer observer) {
+            this.station = station ;
+            this.observer = observer ;
+        }
+
+        public void update(Observable obs, Object arg) {
+            if( quarantined ) {
+                return ;
+            }
+            long start = System.nanoTime() ;
+            startedAt = start ;
+            try {
+                observer.update(obs, arg) ;
+            } finally {
+                long elapsed = System.nanoTime() - start ;
+                startedAt = 0 ;
+                slowest = Math.max(slowest, elapsed) ;
+
+                if( elapsed > budgetNanos ) {
+                    if( ++strikes >= maxStrikes ) {
+                        quarantine(this, strikes, slowest, false) ;
+                    }
+                } else if( strikes > 0 ) {
+                    strikes-- ;
+                }
+                if( isolatePending ) {
+                    isolate(this) ;
+                }
+            }
+        }
+    }
+
+    private final List<Watched> watched = new CopyOnWriteArrayList<>() ;
+    private final Listener listener ;
+    private final long budgetNanos ;
+    private final int maxStrikes ;
+    private final Action action ;
+    private final Thread thread ;
+
+    private final AtomicLong quarantines = new AtomicLong() ;
+
+    /*
+     * Allow each update <budgetMicros> us, quarantining with <action>
+     * after <maxStrikes> strikes, and report quarantines on <out>.
+     */
+    public ObserverWatchdog(PrintStream out, long budgetMicros, int maxStrikes,
+                            Action action) {
+        this((station, observer, what, strikes, nanos, stuck) ->
+            out.printf("watchdog: %s %s of station %d (%d strikes, %s %.1f ms)%n",
+                what == Action.ISOLATE ? "isolated" : "detached",
+                observer.getClass().getSimpleName(), station.getId(), strikes,
+                stuck ? "stuck for" : "slowest", nanos / 1e6),
+            budgetMicros, maxStrikes, action) ;
+    }
+
+    public ObserverWatchdog(Listener listener, long budgetMicros, int maxStrikes,
+                            Action action) {
+        if( budgetMicros <= 0 || maxStrikes < 1 ) {
+            throw new IllegalArgumentException("budget and strikes must be > 0") ;
+        }
+        this.listener = listener ;
+        this.budgetNanos = TimeUnit.MICROSECONDS.toNanos(budgetMicros) ;
+        this.maxStrikes = maxStrikes ;
+        this.action = action ;
+        this.thread = new Thread(this, "observer-watchdog") ;
+        this.thread.setDaemon(true) ;
+    }
+
+    /*
+     * Register <observer> with <station>, under watch.
+     */
+    public void watch(WeatherStation station, Observer observer) {
+        Watched w = new Watched(station, observer) ;
+        watched.add(w) ;
+        station.addObserver(w) ;
+    }
+
+    /*
+     * Remove <observer> from <station> (wherever it is registered now).
+     */
+    public void unwatch(WeatherStation station, Observer observer) {
+        for( Watched w : watched ) {
+            if( w.station == station && w.observer == observer ) {
+                watched.remove(w) ;
+                w.quarantined = true ;
+                station.deleteObserver(w) ;
+                /*
+                 * Under the lock isolate() takes, so the Observer is
+                 * either isolated already, and its queue removed here,
+                 * or never will be.
+                 */
+                synchronized( w ) {
+                    w.isolated = true ;     // never isolate from now on
+                    if( w.queue != null ) {
+                        station.deleteObserver(w.queue) ;
+                        w.queue.close() ;
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Start the monitor thread that catches stuck updates.
+     */
+    public void start() {
+        thread.start() ;
+    }
+
+    public void stop() {
+        thread.interrupt() ;
+    }
+
+    public long getQuarantineCount() {
+        return quarantines.get() ;
+    }
+
+    /*
+     * Body of the monitor thread: look for updates in progress for
+     * longer than <maxStrikes> budgets.
+     */
+    public void run() {
+        long interval = Math.max(1, TimeUnit.NANOSECONDS.toMillis(budgetNanos)) ;
+        while( true ) {
+            try {
+                Thread.sleep(interval) ;
+            } catch (InterruptedException e) {
+                return ;
+            }
+            long now = System.nanoTime() ;
+            for( Watched w : watched ) {
+                long started = w.startedAt ;
+                if( started != 0 && !w.quarantined && now - started > budgetNanos * maxStrikes ) {
+                    quarantine(w, maxStrikes, now - started, true) ;
+                }
+            }
+        }
+    }
+
+    /*
+     * Take the Observer off its station (once) and report it. A stuck
+     * Observer is isolated when its update returns.
+     */
+    private void quarantine(Watched w, int strikes, long nanos, boolean stuck) {
+        synchronized( w ) {
+            if( w.quarantined ) {
+                return ;
+            }
+            w.quarantined = true ;
+        }
+        w.station.deleteObserver(w) ;
+        quarantines.incrementAndGet() ;
+
+        if( action == Action.ISOLATE ) {
+            w.isolatePending = true ;
+            if( w.startedAt == 0 ) {    // otherwise done when update returns
+                isolate(w) ;
+            }
+        }
+        listener.quarantined(w.station, w.observer, action, strikes, nanos, stuck) ;
+    }
+
+    /*
+     * Register the Observer behind a queue of its own (only once).
+     */
+    private void isolate(Watched w) {
+        synchronized( w ) {
+            if( !w.isolated ) {
+                w.isolated = true ;
+                w.queue = new ObserverQueue(w.observer, ISOLATION_CAPACITY,
+                    ObserverQueue.Policy.DROP_OLDEST) ;
+                w.station.addObserver(w.queue) ;
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+/*
+ * Interface for a pressure sensor as seen by WeatherStation. The
+ * reading is atmospheric pressure in inches of mercury (see Barometer).
+ */
+public interface PressureSensor {
+    /*
+     * Take and return a new reading.
+     */
+    double pressure() ;
+}
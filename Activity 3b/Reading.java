@@ -0,0 +1,100 @@
+/*
+ * Class for one immutable snapshot of a WeatherStation's sensors, taken
+ * on a single tick. The temperature is kept as the raw sensor value
+ * (Kelvin to the nearest 1/100th of a degree) and the pressure in inches
+ * of mercury; the other units are computed on request.
+ *
+ * Because a Reading never changes once built, it can be handed from the
+ * sampling thread to any number of readers without locking, and every
+ * value a reader sees comes from the same tick.
+ */
+public final class Reading {
+    public static final int KTOC = -27315 ;             // Kelvin to Celsius conversion.
+    public static final double INCHES_TO_MBAR = 33.8637526 ;
+
+    private final int rawKelvin ;       // Kelvin in 1/100ths of a degree
+    private final double pressure ;     // inches of mercury
+    private final long timestamp ;      // wall clock time (ms since epoch)
+    private final long nanoTime ;       // System.nanoTime() when taken
+    private final long sequence ;       // tick number within the station
+
+    public Reading(int rawKelvin, double pressure, long timestamp,
+                   long nanoTime, long sequence) {
+        this.rawKelvin = rawKelvin ;
+        this.pressure = pressure ;
+        this.timestamp = timestamp ;
+        this.nanoTime = nanoTime ;
+        this.sequence = sequence ;
+    }
+
+    /*
+     * Return the raw sensor reading (Kelvin in 1/100ths of a degree).
+     */
+    public int getRawKelvin() {
+        return rawKelvin ;
+    }
+
+    /*
+     * Return the reading in degrees Kelvin as a double precision number.
+     */
+    public double getKelvin() {
+        return rawKelvin / 100.0 ;
+    }
+
+    /*
+     * Return the reading in degrees Celsius as a double precision number.
+     */
+    public double getCelsius() {
+        return (rawKelvin + KTOC) / 100.0 ;
+    }
+
+    /*
+     * Return the reading in degrees Fahrenheit as a double precision number.
+     */
+    public double getFahrenheit() {
+        return (getCelsius() * 1.8) + 32.0 ;
+    }
+
+    /*
+     * Return the pressure in inches of Mercury.
+     */
+    public double getPressureInches() {
+        return pressure ;
+    }
+
+    /*
+     * Return the pressure in millibars.
+     */
+    public double getPressureMillibars() {
+        return pressure * INCHES_TO_MBAR ;
+    }
+
+    /*
+     * Return the wall clock time the reading was taken, in milliseconds
+     * since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp ;
+    }
+
+    /*
+     * Return the value of System.nanoTime() when the reading was taken,
+     * for measuring elapsed time within this JVM.
+     */
+    public long getNanoTime() {
+        return nanoTime ;
+    }
+
+    /*
+     * Return the tick number of this reading; the first reading a
+     * station takes is number 0.
+     */
+    public long getSequence() {
+        return sequence ;
+    }
+
+    public String toString() {
+        return String.format("Reading #%d: %6.2f K %6.2f inches",
+            sequence, getKelvin(), pressure) ;
+    }
+}
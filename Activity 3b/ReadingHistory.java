@@ -0,0 +1,211 @@
+/*
+ * Class for a fixed-capacity, in-memory history of a station's recent
+ * readings. The history is an Observer: register it with a WeatherStation
+ * and it records the Reading passed with every update.
+ *
+ * Readings are stored column by column in primitive arrays used as a ring
+ * buffer (raw Kelvin hundredths, pressure in inches of mercury, timestamp
+ * in ms), so recording a sample creates no objects, and a week of 1 Hz
+ * data (604800 samples) costs about 12 MB no matter how many ticks go by.
+ *
+ * Samples are addressed by age: index 0 is the newest, size() - 1 the
+ * oldest. "Last N" queries are O(1) per sample; time range queries use a
+ * binary search over the timestamps, which are assumed not to decrease.
+ */
+import java.util.Observable ;
+import java.util.Observer ;
+
+public class ReadingHistory implements Observer {
+    public static final int ONE_WEEK_AT_1HZ = 7 * 24 * 60 * 60 ;
+
+    private final int[] kelvin ;        // raw Kelvin readings (1/100ths)
+    private final double[] pressure ;   // pressure readings (inches)
+    private final long[] timestamp ;    // time of each reading (ms)
+
+    private int head = 0 ;              // slot the next sample goes in
+    private int size = 0 ;              // number of samples held
+
+    /*
+     * Create a history large enough for a week of 1 Hz samples.
+     */
+    public ReadingHistory() {
+        this(ONE_WEEK_AT_1HZ) ;
+    }
+
+    /*
+     * Create a history holding at most <capacity> samples.
+     */
+    public ReadingHistory(int capacity) {
+        if( capacity < 1 ) {
+            throw new IllegalArgumentException("capacity must be >= 1") ;
+        }
+        kelvin = new int[capacity] ;
+        pressure = new double[capacity] ;
+        timestamp = new long[capacity] ;
+    }
+
+    /*
+     * Record the Reading passed with a WeatherStation update.
+     */
+    public void update(Observable obs, Object arg) {
+        if( arg instanceof Reading ) {
+            Reading reading = (Reading) arg ;
+            add(reading.getTimestamp(), reading.getRawKelvin(),
+                reading.getPressureInches()) ;
+        }
+    }
+
+    /*
+     * Append one sample, overwriting the oldest if the history is full.
+     */
+    public synchronized void add(long time, int rawKelvin, double inches) {
+        kelvin[head] = rawKelvin ;
+        pressure[head] = inches ;
+        timestamp[head] = time ;
+
+        head = (head + 1 == kelvin.length) ? 0 : head + 1 ;
+        if( size < kelvin.length ) {
+            size++ ;
+        }
+    }
+
+    public int capacity() {
+        return kelvin.length ;
+    }
+
+    public synchronized int size() {
+        return size ;
+    }
+
+    /*
+     * Return the raw Kelvin reading <age> samples back (0 = newest).
+     */
+    public synchronized int getRawKelvin(int age) {
+        return kelvin[slot(age)] ;
+    }
+
+    /*
+     * Return the pressure in inches <age> samples back (0 = newest).
+     */
+    public synchronized double getPressureInches(int age) {
+        return pressure[slot(age)] ;
+    }
+
+    /*
+     * Return the timestamp <age> samples back (0 = newest).
+     */
+    public synchronized long getTimestamp(int age) {
+        return timestamp[slot(age)] ;
+    }
+
+    /*
+     * Copy the newest <n> samples, oldest first, into the given arrays
+     * (any of which may be null) and return the number copied. At most
+     * as many of the newest samples as fit in the arrays are copied, and
+     * none if <n> is negative.
+     */
+    public synchronized int last(int n, long[] times, int[] rawKelvins,
+                                 double[] inches) {
+        int count = Math.min(n, size) ;
+        count = Math.max(0, Math.min(count, room(times, rawKelvins, inches))) ;
+        copy(size - count, count, times, rawKelvins, inches) ;
+        return count ;
+    }
+
+    /*
+     * Copy the samples taken in [from, to) ms, oldest first, into the
+     * given arrays (any of which may be null) and return the number
+     * copied. At most as many samples as fit in the arrays are copied,
+     * and none if <from> is after <to>.
+     */
+    public synchronized int range(long from, long to, long[] times,
+                                  int[] rawKelvins, double[] inches) {
+        int first = lowerBound(from) ;
+        int count = Math.max(0, lowerBound(to) - first) ;
+
+        count = Math.min(count, room(times, rawKelvins, inches)) ;
+        copy(first, count, times, rawKelvins, inches) ;
+        return count ;
+    }
+
+    /*
+     * Return the number of samples taken in [from, to) ms (0 if <from>
+     * is after <to>).
+     */
+    public synchronized int count(long from, long to) {
+        return Math.max(0, lowerBound(to) - lowerBound(from)) ;
+    }
+
+    /*
+     * Return the position (0 = oldest) of the first sample whose
+     * timestamp is >= time, or size if there is none.
+     */
+    private int lowerBound(long time) {
+        int low = 0 ;
+        int high = size ;
+
+        while( low < high ) {
+            int mid = (low + high) >>> 1 ;
+            if( timestamp[position(mid)] < time ) {
+                low = mid + 1 ;
+            } else {
+                high = mid ;
+            }
+        }
+        return low ;
+    }
+
+    /*
+     * Copy <count> samples starting at position <first> (0 = oldest).
+     */
+    private void copy(int first, int count, long[] times, int[] rawKelvins,
+                      double[] inches) {
+        for( int i = 0 ; i < count ; i++ ) {
+            int slot = position(first + i) ;
+            if( times != null ) {
+                times[i] = timestamp[slot] ;
+            }
+            if( rawKelvins != null ) {
+                rawKelvins[i] = kelvin[slot] ;
+            }
+            if( inches != null ) {
+                inches[i] = pressure[slot] ;
+            }
+        }
+    }
+
+    /*
+     * Return the smallest length of the non-null arrays.
+     */
+    private static int room(long[] times, int[] rawKelvins, double[] inches) {
+        int room = Integer.MAX_VALUE ;
+        if( times != null ) {
+            room = Math.min(room, times.length) ;
+        }
+        if( rawKelvins != null ) {
+            room = Math.min(room, rawKelvins.length) ;
+        }
+        if( inches != null ) {
+            room = Math.min(room, inches.length) ;
+        }
+        return room ;
+    }
+
+    /*
+     * Map a position (0 = oldest) to an array slot.
+     */
+    private int position(int index) {
+        int slot = head - size + index ;
+        return slot < 0 ? slot + kelvin.length : slot ;
+    }
+
+    /*
+     * Map an age (0 = newest) to an array slot.
+     */
+    private int slot(int age) {
+        if( age < 0 || age >= size ) {
+            throw new IndexOutOfBoundsException("age " + age + ", size " + size) ;
+        }
+        return position(size - 1 - age) ;
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Class for an append-only binary log of station readings. The log is an
+ * Observer: register it with any number of WeatherStations and every tick
+ * is appended as one fixed-width record.
+ *
+ * Records are written into memory-mapped segment files in a directory
+ * (readings-00000000.log, readings-00000001.log, ...). A new segment is
+ * started when the current one is full. Dirty pages are forced to disk in
+ * batches rather than after every record.
+ *
+ * Record layout (RECORD_SIZE = 32 bytes, big-endian):
+ *
+ *      0   long    timestamp (ms since epoch)
+ *      8   int     station id
+ *     12   int     raw KelvinTempSensor reading (1/100ths of a degree)
+ *     16   double  Barometer pressure (inches of mercury)
+ *     24   int     reserved (0)
+ *     28   int     COMMIT marker, written last
+ *
+ * A record only counts once its COMMIT marker is present. Segment files
+ * keep their full size (the unused end is zeros) and are never truncated,
+ * since a file cannot be truncated while it is mapped on every platform
+ * (Windows refuses); readers find the end of the records from the COMMIT
+ * markers. When a log is reopened after a crash, any records left after
+ * the last complete one of the last segment are cleared, and appending
+ * resumes from there.
+ */
+import java.io.IOException ;
+import java.nio.MappedByteBuffer ;
+import java.nio.channels.FileChannel ;
+import java.nio.file.DirectoryStream ;
+import java.nio.file.Files ;
+import java.nio.file.Path ;
+import java.nio.file.StandardOpenOption ;
+import java.util.ArrayList ;
+import java.util.Collections ;
+import java.util.List ;
+import java.util.Observable ;
+import java.util.Observer ;
+
+public class ReadingLog implements Observer, AutoCloseable {
+    public static final int RECORD_SIZE = 32 ;
+    public static final int COMMIT = 0x57535231 ;   // "WSR1"
+
+    private static final int DEFAULT_SEGMENT_RECORDS = 1 << 20 ; // 32 MB
+    private static final int DEFAULT_FLUSH_RECORDS = 1 << 14 ;   // 512 KB
+
+    /*
+     * Callback for scan(). The values of each record are passed as
+     * primitives, so scanning creates no per-record objects.
+     */
+    public interface RecordVisitor {
+        void record(long timestamp, int stationId, int rawKelvin, double pressure) ;
+    }
+
+    private final Path directory ;
+    private final long segmentSize ;    // bytes per segment file
+    private final int flushBytes ;      // force after this many new bytes
+
+    private int segment ;               // number of the current segment
+    private FileChannel channel ;       // current segment file
+    private MappedByteBuffer map ;      // mapping of the current segment
+    private int position ;              // next write offset in the segment
+    private int flushed ;               // offset up to which data is forced
+
+    /*
+     * Open (or create) a log in the directory with default segment and
+     * flush sizes.
+     */
+    public ReadingLog(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_RECORDS, DEFAULT_FLUSH_RECORDS) ;
+    }
+
+    /*
+     * Open (or create) a log in the directory holding <segmentRecords>
+     * records per segment file and forcing pages to disk every
+     * <flushRecords> records.
+     */
+    public ReadingLog(Path directory, int segmentRecords, int flushRecords)
+            throws IOException {
+        if( segmentRecords < 1 || flushRecords < 1 ) {
+            throw new IllegalArgumentException("record counts must be >= 1") ;
+        }
+        this.directory = directory ;
+        this.segmentSize = (long) segmentRecords * RECORD_SIZE ;
+        this.flushBytes = (int) Math.min((long) flushRecords * RECORD_SIZE, segmentSize) ;
+
+        if( segmentSize > Integer.MAX_VALUE ) {
+            throw new IllegalArgumentException("segment too large") ;
+        }
+        Files.createDirectories(directory) ;
+
+        List<Path> segments = segments(directory) ;
+        if( segments.isEmpty() ) {
+            open(0) ;
+        } else {
+            Path last = segments.get(segments.size() - 1) ;
+            open(segmentNumber(last)) ;
+            recover() ;
+        }
+    }
+
+    /*
+     * Append the Reading passed with a WeatherStation update.
+     */
+    public void update(Observable obs, Object arg) {
+        if( arg instanceof Reading ) {
+            Reading reading = (Reading) arg ;
+            int stationId = (obs instanceof WeatherStation) ?
+                ((WeatherStation) obs).getId() : 0 ;
+            try {
+                append(reading.getTimestamp(), stationId,
+                    reading.getRawKelvin(), reading.getPressureInches()) ;
+            } catch (IOException e) {}  // ignore exceptions, as run() does
+        }
+    }
+
+    /*
+     * Append one record to the log.
+     */
+    public synchronized void append(long timestamp, int stationId,
+                                    int rawKelvin, double pressure)
+            throws IOException {
+        if( position + RECORD_SIZE > segmentSize ) {
+            roll() ;
+        }
+        map.putLong(position, timestamp) ;
+        map.putInt(position + 8, stationId) ;
+        map.putInt(position + 12, rawKelvin) ;
+        map.putDouble(position + 16, pressure) ;
+        map.putInt(position + 24, 0) ;
+        map.putInt(position + 28, COMMIT) ;
+        position += RECORD_SIZE ;
+
+        if( position - flushed >= flushBytes ) {
+            flush() ;
+        }
+    }
+
+    /*
+     * Force all records appended so far to disk.
+     */
+    public synchronized void flush() {
+        if( position > flushed ) {
+            map.force(flushed, position - flushed) ;
+            flushed = position ;
+        }
+    }
+
+    /*
+     * Flush the log and close the current segment.
+     */
+    public synchronized void close() throws IOException {
+        if( channel != null ) {
+            flush() ;
+            channel.close() ;
+            channel = null ;
+            map = null ;
+        }
+    }
+
+    /*
+     * Visit every complete record in every segment of the log, oldest
+     * first. Segments are mapped read-only and records are read straight
+     * out of the mapping. Returns the number of records visited.
+     */
+    public static long scan(Path directory, RecordVisitor visitor)
+            throws IOException {
+        long count = 0 ;
+
+        for( Path path : segments(directory) ) {
+            try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer data =
+                    in.map(FileChannel.MapMode.READ_ONLY, 0, in.size()) ;
+                int end = validLength(data) ;
+
+                for( int at = 0 ; at < end ; at += RECORD_SIZE ) {
+                    visitor.record(data.getLong(at), data.getInt(at + 8),
+                        data.getInt(at + 12), data.getDouble(at + 16)) ;
+                }
+                count += end / RECORD_SIZE ;
+            }
+        }
+        return count ;
+    }
+
+    /*
+     * Finish the current segment and start the next one.
+     */
+    private void roll() throws IOException {
+        close() ;
+        open(segment + 1) ;
+    }
+
+    /*
+     * Open (creating if need be) the numbered segment and map it.
+     */
+    private void open(int number) throws IOException {
+        segment = number ;
+        channel = FileChannel.open(directory.resolve(segmentName(number)),
+            StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE) ;
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize) ;
+        position = 0 ;
+        flushed = 0 ;
+    }
+
+    /*
+     * Find the end of the last complete record in the current segment,
+     * clear the COMMIT marker of any record after it (one torn by the
+     * crash, or written out of order), and resume appending there.
+     */
+    private void recover() throws IOException {
+        int end = validLength(map) ;
+        boolean cleared = false ;
+
+        for( int at = end ; at + RECORD_SIZE <= segmentSize ; at += RECORD_SIZE ) {
+            if( map.getInt(at + 28) != 0 ) {
+                map.putInt(at + 28, 0) ;
+                cleared = true ;
+            }
+        }
+        if( cleared ) {
+            map.force() ;
+        }
+        position = end ;
+        flushed = end ;
+
+        if( position + RECORD_SIZE > segmentSize ) {
+            roll() ;
+        }
+    }
+
+    /*
+     * Return the length in bytes of the run of complete records at the
+     * start of the buffer.
+     */
+    static int validLength(MappedByteBuffer data) {
+        int at = 0 ;
+        while( at + RECORD_SIZE <= data.capacity()
+                && data.getInt(at + 28) == COMMIT ) {
+            at += RECORD_SIZE ;
+        }
+        return at ;
+    }
+
+    /*
+     * Return the segment files in the directory in order.
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        List<Path> result = new ArrayList<>() ;
+        if( Files.isDirectory(directory) ) {
+            try (DirectoryStream<Path> dir =
+                    Files.newDirectoryStream(directory, "readings-*.log")) {
+                for( Path path : dir ) {
+                    result.add(path) ;
+                }
+            }
+        }
+        Collections.sort(result) ;
+        return result ;
+    }
+
+    private static String segmentName(int number) {
+        return String.format("readings-%08d.log", number) ;
+    }
+
+    private static int segmentNumber(Path path) {
+        String name = path.getFileName().toString() ;
+        return Integer.parseInt(name.substring(9, name.length() - 4)) ;
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Class for a small, headless HTTP API serving station readings, built on
+ * the JDK's own HTTP server. It is an Observer of each station it serves.
+ *
+ *      GET /stations                       ids of the stations served
+ *      GET /stations/<id>/latest           latest Reading as JSON
+ *      GET /stations/<id>/latest.bin       latest Reading, binary
+ *      GET /stations/<id>/history?from=<ms>&to=<ms>[&format=bin]
+ *      GET /stations/<id>/history?last=<n>[&format=bin]
+ *
+ * The latest reading of each station is serialized once per tick, when
+ * the station notifies the server, and the same bytes are sent to every
+ * client that asks before the next tick. History comes from the
+ * station's ReadingHistory, if one was given.
+ *
+ * Binary formats (big-endian):
+ *      latest:  long timestamp, long sequence, int station id,
+ *               int raw Kelvin, double pressure (inches)      = 32 bytes
+ *      history: int count, then per sample long timestamp,
+ *               int raw Kelvin, double pressure               = 4 + 20n
+ */
+import java.io.IOException ;
+import java.io.OutputStream ;
+import java.net.InetAddress ;
+import java.net.InetSocketAddress ;
+import java.nio.ByteBuffer ;
+import java.nio.charset.StandardCharsets ;
+import java.util.HashMap ;
+import java.util.Map ;
+import java.util.Observable ;
+import java.util.Observer ;
+import java.util.concurrent.ConcurrentHashMap ;
+import java.util.concurrent.ExecutorService ;
+import java.util.concurrent.Executors ;
+
+import com.sun.net.httpserver.HttpExchange ;
+import com.sun.net.httpserver.HttpServer ;
+
+public class ReadingServer implements Observer, AutoCloseable {
+    public static final int DEFAULT_PORT = 8383 ;
+    private static final int MAX_HISTORY = 100_000 ;    // samples per request
+
+    /*
+     * What the server knows about one station. The two byte arrays are
+     * replaced together on each tick and never modified.
+     */
+    private static final class Entry {
+        final ReadingHistory history ;  // may be null
+        volatile byte[][] latest ;      // { json, binary }
+
+        Entry(ReadingHistory history) {
+            this.history = history ;
+        }
+    }
+
+    private final Map<Integer, Entry> stations = new ConcurrentHashMap<>() ;
+    private final HttpServer server ;
+    private final ExecutorService pool ;
+
+    /*
+     * Serve on localhost:DEFAULT_PORT with one thread per processor.
+     */
+    public ReadingServer() throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), DEFAULT_PORT),
+            Runtime.getRuntime().availableProcessors()) ;
+    }
+
+    public ReadingServer(InetSocketAddress address, int threads) throws IOException {
+        server = HttpServer.create(address, 1024) ;
+        pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "reading-server") ;
+            t.setDaemon(true) ;
+            return t ;
+        }) ;
+        server.setExecutor(pool) ;
+        server.createContext("/stations", this::handle) ;
+    }
+
+    public void start() {
+        server.start() ;
+    }
+
+    public void close() {
+        server.stop(0) ;
+        pool.shutdownNow() ;
+    }
+
+    /*
+     * Return the port actually bound (useful when binding port 0).
+     */
+    public int getPort() {
+        return server.getAddress().getPort() ;
+    }
+
+    /*
+     * Serve the station, with history from <history> (may be null).
+     */
+    public void addStation(WeatherStation station, ReadingHistory history) {
+        addStation(station, history, Deadband.NONE) ;
+    }
+
+    /*
+     * As above, but only replace the latest reading served when
+     * <deadband> lets the new one through (its sequence then lags the
+     * station's; Deadband.NONE serves every one).
+     */
+    public void addStation(WeatherStation station, ReadingHistory history,
+                           Deadband deadband) {
+        Entry entry = new Entry(history) ;
+        entry.latest = serialize(station.getId(), station.getReading()) ;
+        stations.put(station.getId(), entry) ;
+        station.addAsyncObserver(this, deadband) ;
+    }
+
+    /*
+     * Pre-serialize the Reading passed with a WeatherStation update.
+     */
+    public void update(Observable obs, Object arg) {
+        if( obs instanceof WeatherStation && arg instanceof Reading ) {
+            int id = ((WeatherStation) obs).getId() ;
+            Entry entry = stations.get(id) ;
+            if( entry != null ) {
+                entry.latest = serialize(id, (Reading) arg) ;
+            }
+        }
+    }
+
+    /*
+     * Build the JSON and binary forms of a reading.
+     */
+    static byte[][] serialize(int id, Reading reading) {
+        ByteBuffer binary = ByteBuffer.allocate(32) ;
+        binary.putLong(reading.getTimestamp())
+              .putLong(reading.getSequence())
+              .putInt(id)
+              .putInt(reading.getRawKelvin())
+              .putDouble(reading.getPressureInches()) ;
+
+        return new byte[][] { toJson(id, reading).getBytes(StandardCharsets.UTF_8),
+                              binary.array() } ;
+    }
+
+    /*
+     * Return the JSON form of a reading. The numbers are built from
+     * integers rather than with String.format, which is slow and depends
+     * on the locale.
+     */
+    static String toJson(int id, Reading reading) {
+        int kelvin = reading.getRawKelvin() ;
+        int celsius = kelvin + Reading.KTOC ;
+        long fahrenheit = Math.round((9.0 * celsius + 16000) / 5.0) ;
+
+        StringBuilder json = new StringBuilder(192) ;
+        json.append("{\"station\":").append(id)
+            .append(",\"sequence\":").append(reading.getSequence())
+            .append(",\"timestamp\":").append(reading.getTimestamp())
+            .append(",\"rawKelvin\":").append(kelvin) ;
+        fixed(json.append(",\"kelvin\":"), kelvin, 2) ;
+        fixed(json.append(",\"celsius\":"), celsius, 2) ;
+        fixed(json.append(",\"fahrenheit\":"), fahrenheit, 2) ;
+        pressure(json.append(",\"pressureInches\":"), reading.getPressureInches()) ;
+        fixed(json.append(",\"pressureMillibars\":"),
+            Math.round(reading.getPressureMillibars() * 100), 2) ;
+        return json.append('}').toString() ;
+    }
+
+    /*
+     * Append a pressure in inches the one way every JSON form shows it,
+     * to 4 decimal places.
+     */
+    private static void pressure(StringBuilder out, double inches) {
+        fixed(out, Math.round(inches * 10000), 4) ;
+    }
+
+    /*
+     * Append <scaled> / 10^<decimals> with exactly <decimals> digits
+     * after the point.
+     */
+    private static void fixed(StringBuilder out, long scaled, int decimals) {
+        if( scaled < 0 ) {
+            out.append('-') ;
+            scaled = -scaled ;
+        }
+        long unit = 1 ;
+        for( int i = 0 ; i < decimals ; i++ ) {
+            unit *= 10 ;
+        }
+        out.append(scaled / unit).append('.') ;
+        String fraction = Long.toString(scaled % unit + unit) ;
+        out.append(fraction, 1, fraction.length()) ;
+    }
+
+    /*
+     * Dispatch a request under /stations.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if( !"GET".equals(exchange.getRequestMethod()) ) {
+                send(exchange, 405, "text/plain", ascii("GET only\n")) ;
+                return ;
+            }
+
+            String[] parts = exchange.getRequestURI().getPath().split("/") ;
+            // parts = { "", "stations", <id>, <what> }
+            if( parts.length == 2 ) {
+                send(exchange, 200, "application/json",
+                    ascii(stations.keySet().toString())) ;
+                return ;
+            }
+
+            Entry entry = (parts.length == 4) ? stations.get(parseId(parts[2])) : null ;
+            if( entry == null ) {
+                send(exchange, 404, "text/plain", ascii("no such station\n")) ;
+                return ;
+            }
+
+            switch( parts[3] ) {
+            case "latest":
+                send(exchange, 200, "application/json", entry.latest[0]) ;
+                break ;
+            case "latest.bin":
+                send(exchange, 200, "application/octet-stream", entry.latest[1]) ;
+                break ;
+            case "history":
+                history(exchange, entry) ;
+                break ;
+            default:
+                send(exchange, 404, "text/plain", ascii("not found\n")) ;
+            }
+        } finally {
+            exchange.close() ;
+        }
+    }
+
+    /*
+     * Answer a history query from the station's ReadingHistory.
+     */
+    private void history(HttpExchange exchange, Entry entry) throws IOException {
+        if( entry.history == null ) {
+            send(exchange, 404, "text/plain", ascii("no history kept\n")) ;
+            return ;
+        }
+        Map<String, String> query = query(exchange.getRequestURI().getRawQuery()) ;
+
+        long[] times ;
+        int[] kelvins ;
+        double[] inches ;
+        int count ;
+        try {
+            if( query.containsKey("last") ) {
+                int n = Math.min(Integer.parseInt(query.get("last")), MAX_HISTORY) ;
+                times = new long[Math.max(0, n)] ;
+                kelvins = new int[times.length] ;
+                inches = new double[times.length] ;
+                count = entry.history.last(times.length, times, kelvins, inches) ;
+            } else {
+                long from = Long.parseLong(query.getOrDefault("from", "0")) ;
+                long to = Long.parseLong(query.getOrDefault("to",
+                    Long.toString(Long.MAX_VALUE))) ;
+                if( from > to ) {
+                    send(exchange, 400, "text/plain", ascii("from is after to\n")) ;
+                    return ;
+                }
+                int n = Math.min(entry.history.count(from, to), MAX_HISTORY) ;
+                times = new long[n] ;
+                kelvins = new int[n] ;
+                inches = new double[n] ;
+                count = entry.history.range(from, to, times, kelvins, inches) ;
+            }
+        } catch (NumberFormatException e) {
+            send(exchange, 400, "text/plain", ascii("bad query\n")) ;
+            return ;
+        }
+
+        if( "bin".equals(query.get("format")) ) {
+            ByteBuffer out = ByteBuffer.allocate(4 + 20 * count) ;
+            out.putInt(count) ;
+            for( int i = 0 ; i < count ; i++ ) {
+                out.putLong(times[i]).putInt(kelvins[i]).putDouble(inches[i]) ;
+            }
+            send(exchange, 200, "application/octet-stream", out.array()) ;
+        } else {
+            StringBuilder json = new StringBuilder(count * 64 + 2) ;
+            json.append('[') ;
+            for( int i = 0 ; i < count ; i++ ) {
+                if( i > 0 ) {
+                    json.append(',') ;
+                }
+                json.append("{\"timestamp\":").append(times[i])
+                    .append(",\"rawKelvin\":").append(kelvins[i])
+                    .append(",\"pressureInches\":") ;
+                pressure(json, inches[i]) ;
+                json.append('}') ;
+            }
+            json.append(']') ;
+            send(exchange, 200, "application/json", ascii(json.toString())) ;
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String type,
+                             byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", type) ;
+        exchange.sendResponseHeaders(status, body.length) ;
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body) ;
+        }
+    }
+
+    private static int parseId(String text) {
+        try {
+            return Integer.parseInt(text) ;
+        } catch (NumberFormatException e) {
+            return Integer.MIN_VALUE ;
+        }
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> result = new HashMap<>() ;
+        if( raw != null ) {
+            for( String pair : raw.split("&") ) {
+                int eq = pair.indexOf('=') ;
+                if( eq > 0 ) {
+                    result.put(pair.substring(0, eq), pair.substring(eq + 1)) ;
+                }
+            }
+        }
+        return result ;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII) ;
+    }
+}
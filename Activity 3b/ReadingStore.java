@@ -0,0 +1,341 @@
+/*
+ * Class for a station's long-term history, held in memory as a sequence
+ * of CompressedBlocks with a sparse index, for range and aggregate
+ * queries such as "the highest temperature between t1 and t2".
+ *
+ * The store is an Observer: register it with a WeatherStation and it
+ * records the Reading passed with every update (or load it from a
+ * ReadingLog with fromLog()). New samples collect in an uncompressed open
+ * block; when that is full it is compressed and sealed. For every sealed
+ * block the index keeps, in primitive arrays,
+ *
+ *      first and last timestamp,
+ *      count, min, max and sum of the raw Kelvin readings,
+ *      min, max and sum of the pressures.
+ *
+ * A query finds the first block that may overlap its range by binary
+ * search. Blocks lying wholly inside the range are answered from the
+ * index alone and never decoded; only the (at most two) blocks straddling
+ * an end of the range, and the open block, are scanned sample by sample.
+ *
+ * Ranges are [from, to) ms, as in ReadingHistory. Timestamps are assumed
+ * not to decrease. All methods are synchronized, so Observers of other
+ * stations (e.g. a TextUI showing the day's high) may query while the
+ * store is being written.
+ */
+import java.io.IOException ;
+import java.nio.file.Path ;
+import java.util.Arrays ;
+import java.util.Observable ;
+import java.util.Observer ;
+
+public class ReadingStore implements Observer {
+    public static final int DEFAULT_BLOCK_SIZE = 4096 ;     // samples
+
+    /*
+     * Class for the result of an aggregate query. Temperatures are raw
+     * Kelvin (hundredths of a degree); pressures are inches of mercury.
+     * The min/max/mean values are meaningless when getCount() is 0.
+     */
+    public static final class Aggregate {
+        private long count = 0 ;
+        private int minKelvin = Integer.MAX_VALUE ;
+        private int maxKelvin = Integer.MIN_VALUE ;
+        private long sumKelvin = 0 ;
+        private double minPressure = Double.POSITIVE_INFINITY ;
+        private double maxPressure = Double.NEGATIVE_INFINITY ;
+        private double sumPressure = 0 ;
+        private int blocksDecoded = 0 ;
+
+        private Aggregate() {}
+
+        public long getCount() {
+            return count ;
+        }
+
+        public int getMinKelvin() {
+            return minKelvin ;
+        }
+
+        public int getMaxKelvin() {
+            return maxKelvin ;
+        }
+
+        public double getMeanKelvin() {
+            return count == 0 ? 0.0 : (double) sumKelvin / count ;
+        }
+
+        public double getMinPressure() {
+            return minPressure ;
+        }
+
+        public double getMaxPressure() {
+            return maxPressure ;
+        }
+
+        public double getMeanPressure() {
+            return count == 0 ? 0.0 : sumPressure / count ;
+        }
+
+        /*
+         * Return how many blocks had to be decoded to answer the query.
+         */
+        public int getBlocksDecoded() {
+            return blocksDecoded ;
+        }
+
+        public String toString() {
+            return String.format(
+                "count=%d kelvin[min=%d max=%d mean=%.2f] pressure[min=%.2f max=%.2f mean=%.2f]",
+                count, minKelvin, maxKelvin, getMeanKelvin(),
+                minPressure, maxPressure, getMeanPressure()) ;
+        }
+
+        private void add(int kelvin, double pressure) {
+            count++ ;
+            minKelvin = Math.min(minKelvin, kelvin) ;
+            maxKelvin = Math.max(maxKelvin, kelvin) ;
+            sumKelvin += kelvin ;
+            minPressure = Math.min(minPressure, pressure) ;
+            maxPressure = Math.max(maxPressure, pressure) ;
+            sumPressure += pressure ;
+        }
+    }
+
+    private final int blockSize ;
+
+    // sealed blocks and their index, in time order
+    private CompressedBlock[] blocks = new CompressedBlock[16] ;
+    private long[] firstTime = new long[16] ;
+    private long[] lastTime = new long[16] ;
+    private int[] counts = new int[16] ;
+    private int[] minKelvin = new int[16] ;
+    private int[] maxKelvin = new int[16] ;
+    private long[] sumKelvin = new long[16] ;
+    private double[] minPressure = new double[16] ;
+    private double[] maxPressure = new double[16] ;
+    private double[] sumPressure = new double[16] ;
+    private int sealed = 0 ;
+
+    // the open block
+    private final long[] openTime ;
+    private final int[] openKelvin ;
+    private final double[] openPressure ;
+    private int open = 0 ;
+
+    // scratch space for decoding a block
+    private final long[] scratchTime ;
+    private final int[] scratchKelvin ;
+    private final double[] scratchPressure ;
+
+    public ReadingStore() {
+        this(DEFAULT_BLOCK_SIZE) ;
+    }
+
+    /*
+     * Create a store sealing a block every <blockSize> samples.
+     */
+    public ReadingStore(int blockSize) {
+        if( blockSize < 1 ) {
+            throw new IllegalArgumentException("block size must be >= 1") ;
+        }
+        this.blockSize = blockSize ;
+        openTime = new long[blockSize] ;
+        openKelvin = new int[blockSize] ;
+        openPressure = new double[blockSize] ;
+        scratchTime = new long[blockSize] ;
+        scratchKelvin = new int[blockSize] ;
+        scratchPressure = new double[blockSize] ;
+    }
+
+    /*
+     * Load every record of one station from a ReadingLog directory.
+     */
+    public static ReadingStore fromLog(Path directory, int stationId) throws IOException {
+        ReadingStore store = new ReadingStore() ;
+        ReadingLog.scan(directory, (time, station, kelvin, pressure) -> {
+            if( station == stationId ) {
+                store.add(time, kelvin, pressure) ;
+            }
+        }) ;
+        return store ;
+    }
+
+    /*
+     * Record the Reading passed with a WeatherStation update.
+     */
+    public void update(Observable obs, Object arg) {
+        if( arg instanceof Reading ) {
+            Reading reading = (Reading) arg ;
+            add(reading.getTimestamp(), reading.getRawKelvin(), reading.getPressureInches()) ;
+        }
+    }
+
+    public synchronized void add(long time, int rawKelvin, double inches) {
+        openTime[open] = time ;
+        openKelvin[open] = rawKelvin ;
+        openPressure[open] = inches ;
+        if( ++open == blockSize ) {
+            seal() ;
+        }
+    }
+
+    public synchronized long size() {
+        long total = open ;
+        for( int b = 0 ; b < sealed ; b++ ) {
+            total += counts[b] ;
+        }
+        return total ;
+    }
+
+    public synchronized int getBlockCount() {
+        return sealed ;
+    }
+
+    /*
+     * Return the memory taken by the compressed blocks, in bytes.
+     */
+    public synchronized long getCompressedBytes() {
+        long total = 0 ;
+        for( int b = 0 ; b < sealed ; b++ ) {
+            total += blocks[b].getSizeInBytes() ;
+        }
+        return total ;
+    }
+
+    /*
+     * Aggregate the samples taken in [from, to) ms.
+     */
+    public synchronized Aggregate query(long from, long to) {
+        Aggregate result = new Aggregate() ;
+        if( from >= to ) {
+            return result ;
+        }
+
+        for( int b = firstBlock(from) ; b < sealed && firstTime[b] < to ; b++ ) {
+            if( from <= firstTime[b] && lastTime[b] < to ) {
+                result.count += counts[b] ;
+                result.minKelvin = Math.min(result.minKelvin, minKelvin[b]) ;
+                result.maxKelvin = Math.max(result.maxKelvin, maxKelvin[b]) ;
+                result.sumKelvin += sumKelvin[b] ;
+                result.minPressure = Math.min(result.minPressure, minPressure[b]) ;
+                result.maxPressure = Math.max(result.maxPressure, maxPressure[b]) ;
+                result.sumPressure += sumPressure[b] ;
+            } else {
+                int n = blocks[b].decode(scratchTime, scratchKelvin, scratchPressure) ;
+                result.blocksDecoded++ ;
+                scan(result, from, to, scratchTime, scratchKelvin, scratchPressure, n) ;
+            }
+        }
+        scan(result, from, to, openTime, openKelvin, openPressure, open) ;
+        return result ;
+    }
+
+    /*
+     * Return the highest temperature (raw Kelvin) in [from, to) ms, or
+     * Integer.MIN_VALUE if there were no samples.
+     */
+    public int maxKelvin(long from, long to) {
+        return query(from, to).getMaxKelvin() ;
+    }
+
+    /*
+     * Return the lowest temperature (raw Kelvin) in [from, to) ms, or
+     * Integer.MAX_VALUE if there were no samples.
+     */
+    public int minKelvin(long from, long to) {
+        return query(from, to).getMinKelvin() ;
+    }
+
+    /*
+     * Return the number of samples taken in [from, to) ms.
+     */
+    public long count(long from, long to) {
+        return query(from, to).getCount() ;
+    }
+
+    /*
+     * Compress the open block and add it to the index.
+     */
+    private void seal() {
+        if( sealed == blocks.length ) {
+            grow() ;
+        }
+        CompressedBlock.Encoder encoder = new CompressedBlock.Encoder() ;
+        int kMin = Integer.MAX_VALUE ;
+        int kMax = Integer.MIN_VALUE ;
+        long kSum = 0 ;
+        double pMin = Double.POSITIVE_INFINITY ;
+        double pMax = Double.NEGATIVE_INFINITY ;
+        double pSum = 0 ;
+
+        for( int i = 0 ; i < open ; i++ ) {
+            encoder.append(openTime[i], openKelvin[i], openPressure[i]) ;
+            kMin = Math.min(kMin, openKelvin[i]) ;
+            kMax = Math.max(kMax, openKelvin[i]) ;
+            kSum += openKelvin[i] ;
+            pMin = Math.min(pMin, openPressure[i]) ;
+            pMax = Math.max(pMax, openPressure[i]) ;
+            pSum += openPressure[i] ;
+        }
+
+        blocks[sealed] = encoder.finish() ;
+        firstTime[sealed] = openTime[0] ;
+        lastTime[sealed] = openTime[open - 1] ;
+        counts[sealed] = open ;
+        minKelvin[sealed] = kMin ;
+        maxKelvin[sealed] = kMax ;
+        sumKelvin[sealed] = kSum ;
+        minPressure[sealed] = pMin ;
+        maxPressure[sealed] = pMax ;
+        sumPressure[sealed] = pSum ;
+        sealed++ ;
+        open = 0 ;
+    }
+
+    private void grow() {
+        int length = blocks.length * 2 ;
+        blocks = Arrays.copyOf(blocks, length) ;
+        firstTime = Arrays.copyOf(firstTime, length) ;
+        lastTime = Arrays.copyOf(lastTime, length) ;
+        counts = Arrays.copyOf(counts, length) ;
+        minKelvin = Arrays.copyOf(minKelvin, length) ;
+        maxKelvin = Arrays.copyOf(maxKelvin, length) ;
+        sumKelvin = Arrays.copyOf(sumKelvin, length) ;
+        minPressure = Arrays.copyOf(minPressure, length) ;
+        maxPressure = Arrays.copyOf(maxPressure, length) ;
+        sumPressure = Arrays.copyOf(sumPressure, length) ;
+    }
+
+    /*
+     * Return the first sealed block whose last sample is at or after
+     * <time>, or the number of sealed blocks if there is none.
+     */
+    private int firstBlock(long time) {
+        int low = 0 ;
+        int high = sealed ;
+
+        while( low < high ) {
+            int mid = (low + high) >>> 1 ;
+            if( lastTime[mid] < time ) {
+                low = mid + 1 ;
+            } else {
+                high = mid ;
+            }
+        }
+        return low ;
+    }
+
+    /*
+     * Add the samples of the arrays taken in [from, to) to the result.
+     */
+    private static void scan(Aggregate result, long from, long to,
+                             long[] times, int[] kelvins, double[] inches, int n) {
+        for( int i = 0 ; i < n ; i++ ) {
+            long t = times[i] ;
+            if( t >= from && t < to ) {
+                result.add(kelvins[i], inches[i]) ;
+            }
+        }
+    }
+}
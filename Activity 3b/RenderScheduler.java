@@ -0,0 +1,62 @@
+/*
+ * Class that coalesces display updates for a Swing UI. Any thread may call
+ * markDirty() as often as it likes; the render action then runs on the
+ * Event Dispatch Thread at most once per frame, at no more than the given
+ * frame rate, no matter how fast updates arrive.
+ *
+ * The frame Timer only runs while there is something to render, so an
+ * idle display costs nothing.
+ */
+import java.util.concurrent.atomic.AtomicBoolean ;
+
+import javax.swing.Timer ;
+
+public class RenderScheduler {
+    public static final int DEFAULT_FPS = 30 ;
+
+    private final AtomicBoolean dirty = new AtomicBoolean() ;
+    private final Runnable render ;
+    private final Timer timer ;
+
+    /*
+     * Run <render> on the Event Dispatch Thread at most <maxFps> times
+     * a second, and only after markDirty() has been called.
+     */
+    public RenderScheduler(int maxFps, Runnable render) {
+        if( maxFps < 1 ) {
+            throw new IllegalArgumentException("maxFps must be >= 1") ;
+        }
+        this.render = render ;
+        this.timer = new Timer(Math.max(1, 1000 / maxFps), e -> frame()) ;
+        this.timer.setCoalesce(true) ;
+    }
+
+    /*
+     * Note that the display needs to be brought up to date. Safe to call
+     * from any thread.
+     */
+    public void markDirty() {
+        if( !dirty.getAndSet(true) && !timer.isRunning() ) {
+            timer.start() ;
+        }
+    }
+
+    /*
+     * Called by the Timer on the Event Dispatch Thread once per frame.
+     */
+    private void frame() {
+        if( dirty.getAndSet(false) ) {
+            render.run() ;
+            return ;
+        }
+
+        /*
+         * Nothing changed during the last frame, so stop the Timer. Check
+         * again afterwards in case markDirty() saw it still running.
+         */
+        timer.stop() ;
+        if( dirty.get() ) {
+            timer.start() ;
+        }
+    }
+}
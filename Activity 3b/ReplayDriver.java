@@ -0,0 +1,76 @@
+/*
+ * Class that ticks a WeatherStation built on a ReplaySensor, pacing the
+ * ticks by the recorded timestamps. The speed is a multiplier on the
+ * recorded time: 1.0 replays in real time, 10.0 ten times as fast, and
+ * UNTHROTTLED (or any speed <= 0) ticks as fast as the station and its
+ * Observers allow, for load testing.
+ *
+ * Like WeatherStation, the driver is Runnable so that it can be embedded
+ * in a Thread. It stops when the log runs out (unless the sensor loops)
+ * or when stop() is called.
+ */
+import java.util.concurrent.locks.LockSupport ;
+
+public class ReplayDriver implements Runnable {
+    public static final double REAL_TIME = 1.0 ;
+    public static final double UNTHROTTLED = 0.0 ;
+
+    private final WeatherStation station ;
+    private final ReplaySensor replay ;
+    private final double speed ;
+
+    private volatile boolean running = true ;
+    private volatile long ticks = 0 ;
+
+    public ReplayDriver(WeatherStation station, ReplaySensor replay, double speed) {
+        this.station = station ;
+        this.replay = replay ;
+        this.speed = speed ;
+    }
+
+    /*
+     * Tick the station once per recorded record until the log runs out
+     * or the driver is stopped.
+     */
+    public void run() {
+        boolean throttled = speed > 0 && !Double.isInfinite(speed) ;
+        long startNanos = System.nanoTime() ;
+        long firstTime = replay.nextTimestamp() ;
+        long lastTime = firstTime ;
+
+        while( running && replay.hasNext() ) {
+            if( throttled ) {
+                long time = replay.nextTimestamp() ;
+
+                /*
+                 * The log started over (or went back in time), so start
+                 * the pacing over from here.
+                 */
+                if( time < lastTime ) {
+                    startNanos = System.nanoTime() ;
+                    firstTime = time ;
+                }
+                lastTime = time ;
+
+                long deadline = startNanos + (long) ((time - firstTime) * 1e6 / speed) ;
+                long wait ;
+                while( (wait = deadline - System.nanoTime()) > 0 && running ) {
+                    LockSupport.parkNanos(wait) ;
+                }
+            }
+            station.tick() ;
+            ticks++ ;
+        }
+    }
+
+    public void stop() {
+        running = false ;
+    }
+
+    /*
+     * Return the number of ticks driven so far.
+     */
+    public long getTicks() {
+        return ticks ;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Class for a sensor that plays back the readings of one station from a
+ * ReadingLog instead of measuring anything. It serves as both the
+ * TemperatureSensor and the PressureSensor of a WeatherStation:
+ *
+ *      ReplaySensor replay = new ReplaySensor(logDirectory, 7, true) ;
+ *      WeatherStation ws = new WeatherStation(7, replay, replay) ;
+ *
+ * WeatherStation reads the temperature and then the pressure on each
+ * tick, so reading() moves on to the next recorded record and pressure()
+ * returns the pressure from that same record. As a TimestampedSensor it
+ * also gives the station the recorded time of that record, and the first
+ * record to start from without using it up.
+ *
+ * The segment files are mapped read-only and records are read straight
+ * out of the mappings. Pacing is left to the caller (see ReplayDriver);
+ * the sensor itself returns records as fast as they are asked for.
+ */
+import java.io.IOException ;
+import java.nio.MappedByteBuffer ;
+import java.nio.channels.FileChannel ;
+import java.nio.file.Path ;
+import java.nio.file.StandardOpenOption ;
+import java.util.ArrayList ;
+import java.util.List ;
+
+public class ReplaySensor implements TemperatureSensor, PressureSensor,
+                                     TimestampedSensor {
+    public static final int ALL_STATIONS = -1 ;
+
+    private final MappedByteBuffer[] segments ;
+    private final int[] lengths ;       // bytes of complete records
+    private final int stationId ;       // station to replay, or ALL_STATIONS
+    private final boolean loop ;        // start over at the end of the log
+
+    private int segment = 0 ;           // segment of the next record
+    private int offset = -ReadingLog.RECORD_SIZE ; // offset of the next record
+    private int current = -1 ;          // offset of the current record
+    private int currentSegment = 0 ;    // segment of the current record
+    private boolean exhausted = false ; // no more records (and not looping)
+
+    /*
+     * Replay the records of one station (or of every station, with
+     * ALL_STATIONS) from the log in the directory. If <loop> is true
+     * replay starts over from the beginning after the last record.
+     */
+    public ReplaySensor(Path directory, int stationId, boolean loop)
+            throws IOException {
+        List<MappedByteBuffer> maps = new ArrayList<>() ;
+        List<Integer> ends = new ArrayList<>() ;
+
+        for( Path path : ReadingLog.segments(directory) ) {
+            try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer data =
+                    in.map(FileChannel.MapMode.READ_ONLY, 0, in.size()) ;
+                maps.add(data) ;
+                ends.add(ReadingLog.validLength(data)) ;
+            }
+        }
+        this.segments = maps.toArray(new MappedByteBuffer[0]) ;
+        this.lengths = ends.stream().mapToInt(Integer::intValue).toArray() ;
+        this.stationId = stationId ;
+        this.loop = loop ;
+
+        if( !seek() ) {
+            throw new IOException("no records for station " + stationId
+                + " in " + directory) ;
+        }
+    }
+
+    /*
+     * Move on to the next recorded record and return its temperature.
+     * At the end of a log that does not loop, the last record is
+     * repeated.
+     */
+    public int reading() {
+        if( !exhausted ) {
+            current = offset ;
+            currentSegment = segment ;
+            exhausted = !seek() ;
+        }
+        return segments[currentSegment].getInt(current + 12) ;
+    }
+
+    /*
+     * Return the pressure from the record last returned by reading().
+     */
+    public double pressure() {
+        return segments[currentSegment].getDouble(current + 16) ;
+    }
+
+    /*
+     * Return the recorded timestamp of the record last returned by
+     * reading().
+     */
+    public long timestamp() {
+        return segments[currentSegment].getLong(current) ;
+    }
+
+    /*
+     * Return the record the next call to reading() will move on to (the
+     * current one if there is none), without moving on.
+     */
+    public Reading peek() {
+        MappedByteBuffer data = exhausted ? segments[currentSegment] : segments[segment] ;
+        int at = exhausted ? current : offset ;
+        return new Reading(data.getInt(at + 12), data.getDouble(at + 16),
+            data.getLong(at), System.nanoTime(), 0) ;
+    }
+
+    /*
+     * Return true if there is a record left for reading() to move on to.
+     */
+    public boolean hasNext() {
+        return !exhausted ;
+    }
+
+    /*
+     * Return the recorded timestamp of the record the next call to
+     * reading() will move on to (the current one if there is none).
+     */
+    public long nextTimestamp() {
+        return exhausted ? timestamp() : segments[segment].getLong(offset) ;
+    }
+
+    /*
+     * Advance <segment>/<offset> to the next record of the station,
+     * wrapping to the start of the log when looping. Returns false if
+     * there is no such record.
+     */
+    private boolean seek() {
+        int wraps = 0 ;
+        int at = offset + ReadingLog.RECORD_SIZE ;
+        int seg = segment ;
+
+        while( wraps < 2 ) {
+            while( seg < segments.length ) {
+                for( ; at < lengths[seg] ; at += ReadingLog.RECORD_SIZE ) {
+                    if( stationId == ALL_STATIONS
+                            || segments[seg].getInt(at + 8) == stationId ) {
+                        segment = seg ;
+                        offset = at ;
+                        return true ;
+                    }
+                }
+                seg++ ;
+                at = 0 ;
+            }
+            if( !loop ) {
+                return false ;
+            }
+            seg = 0 ;
+            at = 0 ;
+            wraps++ ;
+        }
+        return false ;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Class that keeps running summaries of a station's readings at four
+ * resolutions: 1 second, 1 minute, 1 hour and 1 day. It is an Observer;
+ * register it with a WeatherStation and each tick's Reading is folded
+ * into the 1 second tier. Each tier passes its windows on to the next as
+ * they close, so every sample costs O(1) and coarse queries (a month of
+ * hourly summaries, say) never touch raw samples.
+ *
+ * Default retention per tier: 1 hour of seconds, 1 week of minutes,
+ * about 13 months of hours and 10 years of days.
+ */
+import java.util.Observable ;
+import java.util.Observer ;
+
+public class RollupPipeline implements Observer {
+    /*
+     * The tiers, finest first, with their window lengths (ms) and the
+     * number of finalized windows each keeps by default.
+     */
+    public enum Resolution {
+        SECOND(1000L, 3600),
+        MINUTE(60_000L, 7 * 24 * 60),
+        HOUR(3_600_000L, 400 * 24),
+        DAY(86_400_000L, 3660) ;
+
+        public final long millis ;
+        public final int capacity ;
+
+        Resolution(long millis, int capacity) {
+            this.millis = millis ;
+            this.capacity = capacity ;
+        }
+    }
+
+    private final RollupTier[] tiers = new RollupTier[Resolution.values().length] ;
+
+    public RollupPipeline() {
+        RollupTier next = null ;
+        Resolution[] all = Resolution.values() ;
+
+        for( int i = all.length - 1 ; i >= 0 ; i-- ) {
+            next = new RollupTier(all[i].millis, all[i].capacity, next) ;
+            tiers[i] = next ;
+        }
+    }
+
+    /*
+     * Fold the Reading passed with a WeatherStation update into the
+     * finest tier.
+     */
+    public void update(Observable obs, Object arg) {
+        if( arg instanceof Reading ) {
+            Reading reading = (Reading) arg ;
+            add(reading.getTimestamp(), reading.getRawKelvin(),
+                reading.getPressureInches()) ;
+        }
+    }
+
+    public void add(long time, int rawKelvin, double pressure) {
+        tiers[0].add(time, rawKelvin, pressure) ;
+    }
+
+    /*
+     * Return the tier for a resolution, for queries.
+     */
+    public RollupTier getTier(Resolution resolution) {
+        return tiers[resolution.ordinal()] ;
+    }
+
+    /*
+     * Close every open window (e.g. before shutting down).
+     */
+    public void flush() {
+        tiers[0].flush() ;
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Class for one resolution of a RollupPipeline: a series of fixed-length
+ * time windows, each summarized by the count, min, max and sum of the raw
+ * Kelvin readings and of the pressures that fell in it.
+ *
+ * The open window is updated in O(1) per sample. When a sample (or a
+ * summary from a finer tier) arrives for a later window, the open window
+ * is finalized: it is stored in a ring of primitive arrays holding the
+ * most recent <capacity> windows, and handed on to the next, coarser
+ * tier, if any.
+ *
+ * A window finalized early by flush() stays open to the samples that
+ * still arrive for it: when it is finalized again they are merged into
+ * the stored window rather than stored as a second one, and only they
+ * are handed on. Samples older than the open window arrive too late to
+ * be counted and are dropped (see getLateCount).
+ */
+public class RollupTier {
+    /*
+     * Callback for scan(), one call per finalized window.
+     */
+    public interface Visitor {
+        void window(long start, int count, int minKelvin, int maxKelvin,
+                    long sumKelvin, double minPressure, double maxPressure,
+                    double sumPressure) ;
+    }
+
+    private final long resolution ;     // window length (ms)
+    private final RollupTier next ;     // coarser tier, or null
+
+    // Finalized windows, oldest overwritten first.
+    private final long[] start ;
+    private final int[] count ;
+    private final int[] minKelvin ;
+    private final int[] maxKelvin ;
+    private final long[] sumKelvin ;
+    private final double[] minPressure ;
+    private final double[] maxPressure ;
+    private final double[] sumPressure ;
+    private int head = 0 ;
+    private int size = 0 ;
+
+    // The open window.
+    private long openStart = Long.MIN_VALUE ;
+    private int openCount = 0 ;
+    private int openMinKelvin ;
+    private int openMaxKelvin ;
+    private long openSumKelvin ;
+    private double openMinPressure ;
+    private double openMaxPressure ;
+    private double openSumPressure ;
+
+    private long late = 0 ;
+
+    /*
+     * Create a tier of <resolution> ms windows that keeps the last
+     * <capacity> of them and passes each one on to <next> (may be null).
+     */
+    public RollupTier(long resolution, int capacity, RollupTier next) {
+        if( resolution <= 0 || capacity < 1 ) {
+            throw new IllegalArgumentException("resolution and capacity must be > 0") ;
+        }
+        this.resolution = resolution ;
+        this.next = next ;
+        start = new long[capacity] ;
+        count = new int[capacity] ;
+        minKelvin = new int[capacity] ;
+        maxKelvin = new int[capacity] ;
+        sumKelvin = new long[capacity] ;
+        minPressure = new double[capacity] ;
+        maxPressure = new double[capacity] ;
+        sumPressure = new double[capacity] ;
+    }
+
+    /*
+     * Add one raw sample.
+     */
+    public void add(long time, int rawKelvin, double pressure) {
+        merge(time, 1, rawKelvin, rawKelvin, rawKelvin,
+            pressure, pressure, pressure) ;
+    }
+
+    /*
+     * Fold a summary of several samples taken at <time> into this tier.
+     */
+    public synchronized void merge(long time, int n, int minK, int maxK,
+                                   long sumK, double minP, double maxP,
+                                   double sumP) {
+        long window = time - Math.floorMod(time, resolution) ;
+
+        if( window < openStart ) {
+            late += n ;
+            return ;
+        }
+        if( window > openStart ) {
+            close() ;
+            openStart = window ;
+        }
+
+        if( openCount == 0 ) {
+            openMinKelvin = minK ;
+            openMaxKelvin = maxK ;
+            openSumKelvin = sumK ;
+            openMinPressure = minP ;
+            openMaxPressure = maxP ;
+            openSumPressure = sumP ;
+        } else {
+            openMinKelvin = Math.min(openMinKelvin, minK) ;
+            openMaxKelvin = Math.max(openMaxKelvin, maxK) ;
+            openSumKelvin += sumK ;
+            openMinPressure = Math.min(openMinPressure, minP) ;
+            openMaxPressure = Math.max(openMaxPressure, maxP) ;
+            openSumPressure += sumP ;
+        }
+        openCount += n ;
+    }
+
+    /*
+     * Finalize the open window now, e.g. at shutdown, without waiting
+     * for a later sample. Samples that still arrive for the window are
+     * merged into it.
+     */
+    public synchronized void flush() {
+        close() ;
+        if( next != null ) {
+            next.flush() ;
+        }
+    }
+
+    public long getResolution() {
+        return resolution ;
+    }
+
+    public int capacity() {
+        return start.length ;
+    }
+
+    /*
+     * Return the number of finalized windows held.
+     */
+    public synchronized int size() {
+        return size ;
+    }
+
+    public synchronized long getLateCount() {
+        return late ;
+    }
+
+    /*
+     * Visit the finalized windows starting in [from, to), oldest first,
+     * and return the number visited.
+     */
+    public synchronized int scan(long from, long to, Visitor visitor) {
+        int first = lowerBound(from) ;
+        int last = lowerBound(to) ;
+
+        for( int i = first ; i < last ; i++ ) {
+            int s = position(i) ;
+            visitor.window(start[s], count[s], minKelvin[s], maxKelvin[s],
+                sumKelvin[s], minPressure[s], maxPressure[s], sumPressure[s]) ;
+        }
+        return last - first ;
+    }
+
+    /*
+     * Store the open window (if it holds anything), merging it into the
+     * newest stored window if that is the same one, flushed earlier, and
+     * pass it on.
+     */
+    private void close() {
+        if( openCount == 0 ) {
+            return ;
+        }
+        int newest = (head == 0) ? start.length - 1 : head - 1 ;
+        if( size > 0 && start[newest] == openStart ) {
+            count[newest] += openCount ;
+            minKelvin[newest] = Math.min(minKelvin[newest], openMinKelvin) ;
+            maxKelvin[newest] = Math.max(maxKelvin[newest], openMaxKelvin) ;
+            sumKelvin[newest] += openSumKelvin ;
+            minPressure[newest] = Math.min(minPressure[newest], openMinPressure) ;
+            maxPressure[newest] = Math.max(maxPressure[newest], openMaxPressure) ;
+            sumPressure[newest] += openSumPressure ;
+        } else {
+            start[head] = openStart ;
+            count[head] = openCount ;
+            minKelvin[head] = openMinKelvin ;
+            maxKelvin[head] = openMaxKelvin ;
+            sumKelvin[head] = openSumKelvin ;
+            minPressure[head] = openMinPressure ;
+            maxPressure[head] = openMaxPressure ;
+            sumPressure[head] = openSumPressure ;
+            head = (head + 1 == start.length) ? 0 : head + 1 ;
+            if( size < start.length ) {
+                size++ ;
+            }
+        }
+
+        if( next != null ) {
+            next.merge(openStart, openCount, openMinKelvin, openMaxKelvin,
+                openSumKelvin, openMinPressure, openMaxPressure, openSumPressure) ;
+        }
+        openCount = 0 ;
+    }
+
+    /*
+     * Return the position (0 = oldest) of the first window starting at
+     * or after <time>, or size if there is none.
+     */
+    private int lowerBound(long time) {
+        int low = 0 ;
+        int high = size ;
+
+        while( low < high ) {
+            int mid = (low + high) >>> 1 ;
+            if( start[position(mid)] < time ) {
+                low = mid + 1 ;
+            } else {
+                high = mid ;
+            }
+        }
+        return low ;
+    }
+
+    /*
+     * Map a position (0 = oldest) to an array slot.
+     */
+    private int position(int index) {
+        int slot = head - size + index ;
+        return slot < 0 ? slot + start.length : slot ;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Class for reproducible, parallel simulation of a fleet of stations.
+ *
+ * Every simulated sensor gets a SplittableRandom stream of its own,
+ * derived from a master seed and the station id alone. The same seed
+ * therefore produces the same readings for every station on every run,
+ * whatever order the stations are created in and however many threads
+ * tick them. Since no random source is shared, there is no contention
+ * between threads and the work scales with the number of cores.
+ *
+ *      Simulation sim = new Simulation(42) ;
+ *      WeatherStation[] fleet = sim.newFleet(100_000) ;
+ *      double rate = sim.run(fleet, 60) ;     // 60 ticks each, in parallel
+ */
+import java.util.SplittableRandom ;
+import java.util.stream.IntStream ;
+
+public class Simulation {
+    private final long seed ;
+
+    public Simulation(long seed) {
+        this.seed = seed ;
+    }
+
+    public long getSeed() {
+        return seed ;
+    }
+
+    /*
+     * Return the random stream of the station with the given id. Its
+     * two splits seed the temperature sensor and the barometer.
+     */
+    public SplittableRandom streamFor(int stationId) {
+        return new SplittableRandom(mix(seed ^ mix(stationId))) ;
+    }
+
+    /*
+     * Return a temperature sensor seeded for the station.
+     */
+    public KelvinTempSensor newTemperatureSensor(int stationId) {
+        return new KelvinTempSensor(streamFor(stationId).split()) ;
+    }
+
+    /*
+     * Return a barometer seeded for the station.
+     */
+    public Barometer newBarometer(int stationId) {
+        SplittableRandom stream = streamFor(stationId) ;
+        stream.split() ;                    // the temperature sensor's
+        return new Barometer(stream.split()) ;
+    }
+
+    /*
+     * Create a station with seeded sensors.
+     */
+    public WeatherStation newStation(int id) {
+        return new WeatherStation(id, newTemperatureSensor(id), newBarometer(id)) ;
+    }
+
+    /*
+     * Create stations 0 .. count-1 with seeded sensors. Latency metrics
+     * are turned off to keep large fleets light.
+     */
+    public WeatherStation[] newFleet(int count) {
+        WeatherStation[] fleet = new WeatherStation[count] ;
+        IntStream.range(0, count).parallel().forEach(i -> {
+            fleet[i] = newStation(i) ;
+            fleet[i].setMetricsEnabled(false) ;
+        }) ;
+        return fleet ;
+    }
+
+    /*
+     * Tick every station in the fleet <ticks> times, spreading the
+     * stations over the common fork/join pool (each station is only ever
+     * ticked by one thread). Returns the throughput in samples per second.
+     */
+    public double run(WeatherStation[] fleet, int ticks) {
+        long start = System.nanoTime() ;
+        IntStream.range(0, fleet.length).parallel().forEach(i -> {
+            WeatherStation station = fleet[i] ;
+            for( int t = 0 ; t < ticks ; t++ ) {
+                station.tick() ;
+            }
+        }) ;
+        long elapsed = System.nanoTime() - start ;
+        return elapsed <= 0 ? 0.0 : (double) fleet.length * ticks * 1e9 / elapsed ;
+    }
+
+    /*
+     * Scramble the bits of a 64-bit value (the MurmurHash3 finalizer),
+     * so that nearby seeds and ids give unrelated streams.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL ;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L ;
+        return z ^ (z >>> 33) ;
+    }
+}
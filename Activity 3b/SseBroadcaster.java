@@ -0,0 +1,303 @@
+/*
+ * Class that pushes every tick of the stations it observes to any number
+ * of HTTP clients as Server-Sent Events (text/event-stream), e.g. browser
+ * dashboards using EventSource, instead of having each of them poll.
+ *
+ * Each Reading is encoded once, in update(), and the same bytes are
+ * queued on every connection. A single thread runs a non-blocking
+ * Selector that accepts clients, reads their requests and writes out
+ * whatever is queued. update() only queues the event and wakes the
+ * selector, so it is cheap enough to register as a synchronous Observer
+ * next to TextUI and SwingUI.
+ *
+ * Every connection has its own write queue. A client that falls so far
+ * behind that more than <maxQueuedBytes> are waiting for it is
+ * disconnected, so one slow client cannot hold memory for everyone.
+ *
+ * Events look like:
+ *
+ *      id: <station id>-<sequence>
+ *      event: reading
+ *      data: <JSON as served by ReadingServer>
+ *
+ * Sequence numbers are only unique per station, so the station id is part
+ * of the event id.
+ */
+import java.io.IOException ;
+import java.net.InetSocketAddress ;
+import java.nio.ByteBuffer ;
+import java.nio.channels.SelectionKey ;
+import java.nio.channels.Selector ;
+import java.nio.channels.ServerSocketChannel ;
+import java.nio.channels.SocketChannel ;
+import java.nio.charset.StandardCharsets ;
+import java.util.ArrayDeque ;
+import java.util.ArrayList ;
+import java.util.List ;
+import java.util.Observable ;
+import java.util.Observer ;
+import java.util.concurrent.ConcurrentLinkedQueue ;
+import java.util.concurrent.atomic.AtomicBoolean ;
+
+public class SseBroadcaster implements Observer, Runnable, AutoCloseable {
+    public static final int DEFAULT_MAX_QUEUED_BYTES = 256 * 1024 ;
+    private static final int MAX_REQUEST_BYTES = 8 * 1024 ;
+
+    private static final byte[] RESPONSE = (
+        "HTTP/1.1 200 OK\r\n" +
+        "Content-Type: text/event-stream\r\n" +
+        "Cache-Control: no-cache\r\n" +
+        "Connection: keep-alive\r\n" +
+        "Access-Control-Allow-Origin: *\r\n\r\n").getBytes(StandardCharsets.US_ASCII) ;
+
+    /*
+     * One client connection.
+     */
+    private static final class Client {
+        final SocketChannel channel ;
+        final ByteBuffer request = ByteBuffer.allocate(MAX_REQUEST_BYTES) ;
+        final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>() ;
+        boolean subscribed = false ;    // request received, response sent
+        long queued = 0 ;               // bytes waiting in the queue
+
+        Client(SocketChannel channel) {
+            this.channel = channel ;
+        }
+    }
+
+    private final ServerSocketChannel server ;
+    private final Selector selector ;
+    private final Thread thread ;
+    private final int maxQueuedBytes ;
+
+    private final ConcurrentLinkedQueue<byte[]> pending = new ConcurrentLinkedQueue<>() ;
+    private final AtomicBoolean woken = new AtomicBoolean() ;
+    private final List<Client> clients = new ArrayList<>() ;   // selector thread only
+
+    private volatile boolean running = true ;
+    private volatile int subscribers = 0 ;
+    private volatile long events = 0 ;
+    private volatile long slowDisconnects = 0 ;
+
+    /*
+     * Listen on <address> and drop clients with more than
+     * <maxQueuedBytes> waiting to be sent.
+     */
+    public SseBroadcaster(InetSocketAddress address, int maxQueuedBytes)
+            throws IOException {
+        this.maxQueuedBytes = maxQueuedBytes ;
+        selector = Selector.open() ;
+        server = ServerSocketChannel.open() ;
+        server.bind(address, 1024) ;
+        server.configureBlocking(false) ;
+        server.register(selector, SelectionKey.OP_ACCEPT) ;
+
+        thread = new Thread(this, "sse-broadcaster") ;
+        thread.setDaemon(true) ;
+    }
+
+    public void start() {
+        thread.start() ;
+    }
+
+    public void close() throws IOException {
+        running = false ;
+        selector.wakeup() ;
+    }
+
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort() ;
+    }
+
+    /*
+     * Observe the station (synchronously; update() never blocks).
+     */
+    public void addStation(WeatherStation station) {
+        station.addObserver(this) ;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers ;
+    }
+
+    public long getEventCount() {
+        return events ;
+    }
+
+    public long getSlowDisconnectCount() {
+        return slowDisconnects ;
+    }
+
+    /*
+     * Encode the Reading passed with a WeatherStation update once and
+     * hand it to the selector thread.
+     */
+    public void update(Observable obs, Object arg) {
+        if( !(arg instanceof Reading) || subscribers == 0 ) {
+            return ;
+        }
+        Reading reading = (Reading) arg ;
+        int id = (obs instanceof WeatherStation) ? ((WeatherStation) obs).getId() : 0 ;
+        String event = "id: " + id + "-" + reading.getSequence() + "\nevent: reading\ndata: "
+            + ReadingServer.toJson(id, reading) + "\n\n" ;
+
+        pending.add(event.getBytes(StandardCharsets.UTF_8)) ;
+        if( !woken.getAndSet(true) ) {
+            selector.wakeup() ;
+        }
+    }
+
+    /*
+     * Body of the selector thread.
+     */
+    public void run() {
+        try {
+            while( running ) {
+                selector.select() ;
+                woken.set(false) ;
+
+                for( SelectionKey key : selector.selectedKeys() ) {
+                    if( !key.isValid() ) {
+                        continue ;
+                    }
+                    if( key.isAcceptable() ) {
+                        accept() ;
+                    } else {
+                        Client client = (Client) key.attachment() ;
+                        if( key.isReadable() ) {
+                            read(key, client) ;
+                        }
+                        if( key.isValid() && key.isWritable() ) {
+                            write(key, client) ;
+                        }
+                    }
+                }
+                selector.selectedKeys().clear() ;
+
+                byte[] event ;
+                while( (event = pending.poll()) != null ) {
+                    broadcast(event) ;
+                }
+            }
+        } catch (IOException e) {}  // ignore exceptions; shut down below
+        finally {
+            for( Client client : new ArrayList<>(clients) ) {
+                drop(client) ;
+            }
+            try {
+                server.close() ;
+                selector.close() ;
+            } catch (IOException e) {}
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel ;
+        while( (channel = server.accept()) != null ) {
+            channel.configureBlocking(false) ;
+            Client client = new Client(channel) ;
+            channel.register(selector, SelectionKey.OP_READ, client) ;
+            clients.add(client) ;
+        }
+    }
+
+    /*
+     * Read the client's request; once the blank line ending its headers
+     * arrives, answer with the event-stream headers and subscribe it.
+     * Anything a subscribed client sends is ignored.
+     */
+    private void read(SelectionKey key, Client client) {
+        try {
+            ByteBuffer buffer = client.request ;
+            if( !buffer.hasRemaining() ) {
+                buffer.clear() ;
+            }
+            if( client.channel.read(buffer) < 0 ) {
+                drop(client) ;
+                return ;
+            }
+            if( !client.subscribed && endOfHeaders(buffer) ) {
+                client.subscribed = true ;
+                subscribers++ ;
+                enqueue(key, client, RESPONSE) ;
+            } else if( !client.subscribed && !buffer.hasRemaining() ) {
+                drop(client) ;      // request too large
+            }
+        } catch (IOException e) {
+            drop(client) ;
+        }
+    }
+
+    /*
+     * Queue an event on every subscribed client.
+     */
+    private void broadcast(byte[] event) {
+        events++ ;
+        for( int i = clients.size() - 1 ; i >= 0 ; i-- ) {     // drop() may remove
+            Client client = clients.get(i) ;
+            if( client.subscribed ) {
+                enqueue(client.channel.keyFor(selector), client, event) ;
+            }
+        }
+    }
+
+    /*
+     * Queue bytes for the client and try to send them at once, dropping
+     * the client if too much is already waiting.
+     */
+    private void enqueue(SelectionKey key, Client client, byte[] bytes) {
+        if( client.queued + bytes.length > maxQueuedBytes ) {
+            slowDisconnects++ ;
+            drop(client) ;
+            return ;
+        }
+        client.queue.add(ByteBuffer.wrap(bytes)) ;
+        client.queued += bytes.length ;
+        write(key, client) ;
+    }
+
+    /*
+     * Write as much of the client's queue as the socket will take, and
+     * ask to be told when it can take more.
+     */
+    private void write(SelectionKey key, Client client) {
+        try {
+            ByteBuffer head ;
+            while( (head = client.queue.peek()) != null ) {
+                int n = client.channel.write(head) ;
+                client.queued -= n ;
+                if( head.hasRemaining() ) {
+                    break ;
+                }
+                client.queue.poll() ;
+            }
+            int ops = SelectionKey.OP_READ ;
+            if( !client.queue.isEmpty() ) {
+                ops |= SelectionKey.OP_WRITE ;
+            }
+            key.interestOps(ops) ;
+        } catch (IOException e) {
+            drop(client) ;
+        }
+    }
+
+    private void drop(Client client) {
+        if( clients.remove(client) && client.subscribed ) {
+            subscribers-- ;
+        }
+        try {
+            client.channel.close() ;
+        } catch (IOException e) {}
+    }
+
+    private static boolean endOfHeaders(ByteBuffer buffer) {
+        int end = buffer.position() ;
+        for( int i = 3 ; i < end ; i++ ) {
+            if( buffer.get(i - 3) == '\r' && buffer.get(i - 2) == '\n'
+                    && buffer.get(i - 1) == '\r' && buffer.get(i) == '\n' ) {
+                return true ;
+            }
+        }
+        return false ;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Class that collects the latency histograms of one WeatherStation:
+ *
+ *      sensor.read      time to read both sensors on a tick
+ *      notify.sync      from the sensor read until every synchronous
+ *                       Observer has returned
+ *      notify.<name>    time spent in one Observer's update, synchronous
+ *                       or asynchronous
+ *      delivery.<name>  from the sensor read until an asynchronous
+ *                       Observer's update has returned (end-to-end
+ *                       latency)
+ *
+ * The metrics can be published as a JMX MBean with register(), and
+ * MetricsReporter prints report() periodically for production logs.
+ */
+import java.lang.management.ManagementFactory ;
+import java.util.Map ;
+import java.util.concurrent.ConcurrentHashMap ;
+
+import javax.management.JMException ;
+import javax.management.ObjectName ;
+
+public class StationMetrics implements StationMetricsMBean {
+    public static final String SENSOR_READ = "sensor.read" ;
+    public static final String NOTIFY_SYNC = "notify.sync" ;
+
+    private final WeatherStation station ;
+    private final LatencyHistogram sensorRead = new LatencyHistogram() ;
+    private final LatencyHistogram notifySync = new LatencyHistogram() ;
+
+    private final Map<String, LatencyHistogram> histograms =
+        new ConcurrentHashMap<>() ;
+    private final Map<String, Boolean> observers = new ConcurrentHashMap<>() ;
+    private final Map<String, Integer> nameCounts = new ConcurrentHashMap<>() ;
+
+    public StationMetrics(WeatherStation station) {
+        this.station = station ;
+        histograms.put(SENSOR_READ, sensorRead) ;
+        histograms.put(NOTIFY_SYNC, notifySync) ;
+    }
+
+    public LatencyHistogram sensorRead() {
+        return sensorRead ;
+    }
+
+    public LatencyHistogram notifySync() {
+        return notifySync ;
+    }
+
+    /*
+     * Return a name for the Observer's histograms: its class name, with a
+     * "#n" suffix for the second and later Observers of the same class.
+     */
+    public String nameFor(Object observer) {
+        String base = observer.getClass().getSimpleName() ;
+        int n = nameCounts.merge(base, 1, Integer::sum) ;
+        return n == 1 ? base : base + "#" + n ;
+    }
+
+    /*
+     * Return the notify histogram of the named Observer, creating it if
+     * need be.
+     */
+    public LatencyHistogram observerNotify(String name) {
+        observers.put(name, Boolean.TRUE) ;
+        return histograms.computeIfAbsent("notify." + name, k -> new LatencyHistogram()) ;
+    }
+
+    /*
+     * Return the end-to-end delivery histogram of the named asynchronous
+     * Observer, creating it if need be.
+     */
+    public LatencyHistogram observerDelivery(String name) {
+        observers.put(name, Boolean.TRUE) ;
+        return histograms.computeIfAbsent("delivery." + name, k -> new LatencyHistogram()) ;
+    }
+
+    /*
+     * Publish these metrics on the platform MBean server as
+     * WeatherStation:type=StationMetrics,id=<station id>.
+     */
+    public void register() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName()) ;
+    }
+
+    public void unregister() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName()) ;
+    }
+
+    public long getTicks() {
+        return station.getTelemetry().getTicks() ;
+    }
+
+    public double getSensorReadP99Micros() {
+        return sensorRead.getPercentile(99) / 1e3 ;
+    }
+
+    public double getNotifyP99Micros() {
+        return notifySync.getPercentile(99) / 1e3 ;
+    }
+
+    public double getMaxJitterMicros() {
+        return station.getTelemetry().getMaxJitterNanos() / 1e3 ;
+    }
+
+    public long getOverruns() {
+        return station.getTelemetry().getOverruns() ;
+    }
+
+    public String[] getObserverNames() {
+        return observers.keySet().stream().sorted().toArray(String[]::new) ;
+    }
+
+    public double percentileMicros(String histogram, double percentile) {
+        LatencyHistogram h = histograms.get(histogram) ;
+        return h == null ? 0.0 : h.getPercentile(percentile) / 1e3 ;
+    }
+
+    public String report() {
+        StringBuilder text = new StringBuilder() ;
+        text.append(String.format("station %d: %s%n",
+            station.getId(), station.getTelemetry())) ;
+        histograms.keySet().stream().sorted().forEach(name ->
+            text.append(String.format("  %-28s %s%n",
+                name, histograms.get(name).summary()))) ;
+        return text.toString() ;
+    }
+
+    public void reset() {
+        for( LatencyHistogram h : histograms.values() ) {
+            h.reset() ;
+        }
+        station.getTelemetry().reset() ;
+    }
+
+    private ObjectName objectName() throws JMException {
+        return new ObjectName("WeatherStation:type=StationMetrics,id=" + station.getId()) ;
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * JMX management interface for StationMetrics. Times are in microseconds.
+ */
+public interface StationMetricsMBean {
+    long getTicks() ;
+
+    double getSensorReadP99Micros() ;
+
+    double getNotifyP99Micros() ;
+
+    double getMaxJitterMicros() ;
+
+    long getOverruns() ;
+
+    String[] getObserverNames() ;
+
+    /*
+     * Return the <percentile> latency of a histogram named in report().
+     */
+    double percentileMicros(String histogram, double percentile) ;
+
+    /*
+     * Return a text dump of every histogram.
+     */
+    String report() ;
+
+    void reset() ;
+}
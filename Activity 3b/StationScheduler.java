@@ -0,0 +1,199 @@
+/*
+ * Class that hosts any number of WeatherStation objects on a small, shared
+ * pool of threads rather than giving every station a Thread of its own.
+ *
+ * Each station is ticked at its own period from absolute deadlines (start
+ * + n * period, each run scheduling the next), so the time spent reading
+ * sensors and notifying Observers does not accumulate as drift, and each
+ * tick's jitter is recorded in the station's TickTelemetry. As in
+ * WeatherStation.run(), a tick that runs past the next deadline is
+ * counted as one overrun and the deadlines it missed are skipped, not
+ * run late in a burst. Stations can be started and
+ * stopped individually, and the scheduler keeps a count of samples taken
+ * so it can report throughput in samples per second.
+ */
+import java.util.Map ;
+import java.util.concurrent.ConcurrentHashMap ;
+import java.util.concurrent.Executors ;
+import java.util.concurrent.ScheduledExecutorService ;
+import java.util.concurrent.RejectedExecutionException ;
+import java.util.concurrent.ScheduledFuture ;
+import java.util.concurrent.ThreadFactory ;
+import java.util.concurrent.TimeUnit ;
+import java.util.concurrent.atomic.AtomicInteger ;
+import java.util.concurrent.atomic.LongAdder ;
+
+public class StationScheduler {
+    private final ScheduledExecutorService pool ;
+    private final Map<WeatherStation, Ticker> running =
+        new ConcurrentHashMap<>() ;
+    private final LongAdder samples = new LongAdder() ;   // total ticks taken
+
+    private final long createdNanos = System.nanoTime() ;
+    private long lastCount = 0 ;                // sample count at last report
+    private long lastNanos = createdNanos ;     // time of last report
+
+    /*
+     * Create a scheduler with one thread per available processor.
+     */
+    public StationScheduler() {
+        this(Runtime.getRuntime().availableProcessors()) ;
+    }
+
+    /*
+     * Create a scheduler whose pool has the given number of threads.
+     */
+    public StationScheduler(int threads) {
+        if( threads < 1 ) {
+            throw new IllegalArgumentException("threads must be >= 1") ;
+        }
+        AtomicInteger counter = new AtomicInteger() ;
+        ThreadFactory factory =
+            r -> new Thread(r, "station-scheduler-" + counter.incrementAndGet()) ;
+        pool = Executors.newScheduledThreadPool(threads, factory) ;
+    }
+
+    /*
+     * Start ticking the station once per period. Starting a station
+     * that is already running has no effect.
+     */
+    public void start(WeatherStation station) {
+        running.computeIfAbsent(station, ws -> {
+            long period = ws.getPeriodNanos() ;
+            Ticker ticker = new Ticker(ws, System.nanoTime() + period, period) ;
+            ticker.schedule() ;
+            return ticker ;
+        }) ;
+    }
+
+    /*
+     * Stop ticking the station. Returns false if it was not running.
+     */
+    public boolean stop(WeatherStation station) {
+        Ticker ticker = running.remove(station) ;
+        if( ticker == null ) {
+            return false ;
+        }
+        ticker.cancel() ;
+        return true ;
+    }
+
+    /*
+     * Return true if the station is currently being ticked.
+     */
+    public boolean isRunning(WeatherStation station) {
+        return running.containsKey(station) ;
+    }
+
+    /*
+     * Return the number of stations currently being ticked.
+     */
+    public int getStationCount() {
+        return running.size() ;
+    }
+
+    /*
+     * Return the total number of samples taken by all stations.
+     */
+    public long getSampleCount() {
+        return samples.sum() ;
+    }
+
+    /*
+     * Return the throughput, in samples per second, since the previous
+     * call to this method (or since the scheduler was created).
+     */
+    public synchronized double getSamplesPerSecond() {
+        long count = samples.sum() ;
+        long now = System.nanoTime() ;
+        double rate = rate(count - lastCount, now - lastNanos) ;
+
+        lastCount = count ;
+        lastNanos = now ;
+        return rate ;
+    }
+
+    /*
+     * Return the average throughput, in samples per second, since the
+     * scheduler was created.
+     */
+    public double getAverageSamplesPerSecond() {
+        return rate(samples.sum(), System.nanoTime() - createdNanos) ;
+    }
+
+    /*
+     * Stop every station and release the pool threads.
+     */
+    public void shutdown() {
+        running.clear() ;
+        pool.shutdownNow() ;
+    }
+
+    /*
+     * The scheduled task for one station. Each run is scheduled once, for
+     * its deadline, by the run before it.
+     */
+    private final class Ticker implements Runnable {
+        private final WeatherStation station ;
+        private final long period ;
+        private long deadline ;         // when the next run is due
+        private volatile ScheduledFuture<?> future ;
+        private volatile boolean cancelled = false ;
+
+        Ticker(WeatherStation station, long firstDeadline, long period) {
+            this.station = station ;
+            this.deadline = firstDeadline ;
+            this.period = period ;
+        }
+
+        void schedule() {
+            try {
+                future = pool.schedule(this, deadline - System.nanoTime(),
+                    TimeUnit.NANOSECONDS) ;
+            } catch (RejectedExecutionException e) {}  // shut down
+        }
+
+        void cancel() {
+            cancelled = true ;
+            ScheduledFuture<?> f = future ;
+            if( f != null ) {
+                f.cancel(false) ;
+            }
+        }
+
+        /*
+         * Take one sample from the station, then schedule the next run. An
+         * exception thrown by a station (or one of its Observers) is caught
+         * and ignored the same way WeatherStation.run() does, so that the
+         * station keeps being ticked.
+         */
+        public void run() {
+            if( cancelled ) {
+                return ;
+            }
+            TickTelemetry telemetry = station.getTelemetry() ;
+            telemetry.recordTick(System.nanoTime() - deadline) ;
+
+            try {
+                station.tick() ;
+                samples.increment() ;
+            } catch (Exception e) {}    // ignore exceptions
+
+            long late = System.nanoTime() - (deadline + period) ;
+            if( late >= 0 ) {
+                long skipped = late / period + 1 ;
+                telemetry.recordOverrun(skipped) ;
+                deadline += skipped * period ;
+            }
+            deadline += period ;
+
+            if( !cancelled ) {
+                schedule() ;
+            }
+        }
+    }
+
+    private static double rate(long count, long nanos) {
+        return nanos <= 0 ? 0.0 : count * 1e9 / nanos ;
+    }
+}
@@ -24,13 +24,26 @@ public class SwingUI extends JFrame implements Observer {
 
     // Declare and instantiate new font for display.
     private static Font labelFont = new Font(Font.SERIF, Font.PLAIN, 42) ;
+
+    // Latest reading to display, and the scheduler that displays it on the EDT.
+    private volatile Reading latest;
+    private final RenderScheduler renderer = new RenderScheduler(RenderScheduler.DEFAULT_FPS, this::render);
+
+    // Shared, pre-formatted temperature text.
+    private final DisplayCache cache = DisplayCache.shared();
     
     public SwingUI(WeatherStation station) {
+        this(station, Deadband.CHANGED) ;
+    }
+
+    /*
+     * Display the readings from <station> that <deadband> lets through.
+     */
+    public SwingUI(WeatherStation station, Deadband deadband) {
         super("Weather Station (SwingUI)") ;
 
-        // Initialize the weather station and set "this" as its observer.
+        // Initialize the weather station.
         this.station = station;
-        this.station.addObserver(this);
 
         /*
          * WeatherStation frame is a grid of 1 row by an indefinite
@@ -44,6 +57,9 @@ public class SwingUI extends JFrame implements Observer {
         hgInchesField = setNewJPanel(hgInchesField, " Inches ");            // Set up Mercury Inches display.
         millibarsField = setNewJPanel(millibarsField, " Millibars ");       // Set up Millibars display.
 
+        // Now that the labels exist, set "this" as the station's (asynchronous) observer.
+        this.station.addAsyncObserver(this, deadband);
+
         /*
          * Set up the frame's default close operation pack its elements,
          * and make the frame visible.
@@ -68,10 +84,20 @@ public class SwingUI extends JFrame implements Observer {
     /*
      * Simplified helper function, used to more efficiently format the 
      * Weather Station data, rather than having each one being formatted
-     * in their own function (DRY Design).
+     * in their own function (DRY Design). The label is only changed (and
+     * so only repainted) if its text is actually different.
      */
     public void setWeatherJLabel(JLabel label, double value) {
-        label.setText(String.format("%6.2f", value));
+        setWeatherJLabel(label, String.format("%6.2f", value));
+    }
+
+    /*
+     * As above, for text already formatted (e.g. from the DisplayCache).
+     */
+    public void setWeatherJLabel(JLabel label, String text) {
+        if (!text.equals(label.getText())) {
+            label.setText(text);
+        }
     }
 
     /*
@@ -90,7 +116,12 @@ public class SwingUI extends JFrame implements Observer {
         return label ;
     }
     
-    public void update(Observable obs, Object ignore) {
+    /*
+     * Called from the station (off the EDT) on every tick. Only remembers
+     * the reading; the labels are updated by render() on the EDT, at most
+     * RenderScheduler.DEFAULT_FPS times a second however fast the ticks are.
+     */
+    public void update(Observable obs, Object arg) {
         /*
          * Check for spurious updates from unrelated objects.
          */
@@ -98,13 +129,25 @@ public class SwingUI extends JFrame implements Observer {
             return ;
         }
 
+        // The Reading passed with the update keeps all five values from the same tick.
+        latest = (arg instanceof Reading) ? (Reading) arg : station.getReading();
+        renderer.markDirty();
+    }
+
+    /*
+     * Display the latest reading. Runs on the EDT.
+     */
+    private void render() {
+        Reading reading = latest;
+
         /*
-         * Retrieve and print the temperatures.
+         * Retrieve and print the temperatures (looked up, not formatted).
          */
-        this.setWeatherJLabel(kelvinField, station.getKelvin());
-        this.setWeatherJLabel(celsiusField, station.getCelsius());
-        this.setWeatherJLabel(fahrenheitField, station.getFahrenheit());
-        this.setWeatherJLabel(hgInchesField, station.getPressureInches());
-        this.setWeatherJLabel(millibarsField, station.getPressureMillibars());
+        int raw = reading.getRawKelvin();
+        this.setWeatherJLabel(kelvinField, cache.text(raw, DisplayCache.KELVIN));
+        this.setWeatherJLabel(celsiusField, cache.text(raw, DisplayCache.CELSIUS));
+        this.setWeatherJLabel(fahrenheitField, cache.text(raw, DisplayCache.FAHRENHEIT));
+        this.setWeatherJLabel(hgInchesField, reading.getPressureInches());
+        this.setWeatherJLabel(millibarsField, reading.getPressureMillibars());
     }
 }
@@ -0,0 +1,11 @@
+/*
+ * Interface for a temperature sensor as seen by WeatherStation. The
+ * reading is a Kelvin temperature to the nearest 100th of a degree
+ * (see KelvinTempSensor for the calibration).
+ */
+public interface TemperatureSensor {
+    /*
+     * Take and return a new reading.
+     */
+    int reading() ;
+}
@@ -15,44 +15,66 @@
  * The main method for the text based monitoring application
  * is here as well.
  */
+import java.io.IOException ;
 import java.util.Observer ;
 import java.util.Observable ;
 
 public class TextUI implements Observer {
     private final WeatherStation station ;
+    private final ConsoleWriter out ;   // batched output, usually stdout
+
+    private final FixedPointFormatter formatter = new FixedPointFormatter() ;
+    private final byte[] line = new byte[FixedPointFormatter.MAX_LENGTH] ;
 
     /*
      * Remember the station we're attached to and
-     * add ourselves as an observer.
+     * add ourselves as an (asynchronous) observer,
+     * told only of readings that print differently.
      */
     public TextUI(WeatherStation station) {
+        this(station, ConsoleWriter.stdout()) ;
+    }
+
+    /*
+     * As above, but print through the given writer (which may be
+     * shared by many TextUIs).
+     */
+    public TextUI(WeatherStation station, ConsoleWriter out) {
+        this(station, out, Deadband.CHANGED) ;
+    }
+
+    /*
+     * As above, printing the readings <deadband> lets through
+     * (Deadband.NONE to print every one).
+     */
+    public TextUI(WeatherStation station, ConsoleWriter out, Deadband deadband) {
         this.station = station ;
-        this.station.addObserver(this) ;
+        this.out = out ;
+        this.station.addAsyncObserver(this, deadband) ;
     }
 
     /*
      * Called when WeatherStation gets another reading.
      * The Observable should be the station; the Object
-     * argument is ignored.
+     * argument is the Reading taken on that tick.
      */
-    public void update(Observable obs, Object ignore) {
+    public void update(Observable obs, Object arg) {
         /*
          * Check for spurious updates from unrelated objects.
          */
         if( station != obs ) {
             return ;
         }
+        Reading reading = (arg instanceof Reading) ?
+            (Reading) arg : station.getReading() ;
+
         /*
-         * Retrieve and print the temperatures.
+         * Print the temperatures and pressures from the one snapshot,
+         * in the layout of FixedPointFormatter.FORMAT.
          */
-        System.out.printf(
-            "%nTemperature: %6.2f C %6.2f F %6.2f K%n" +
-            "Pressure:    %6.2f inches %6.2f mbar%n",
-            station.getCelsius(), 
-            station.getFahrenheit(), 
-            station.getKelvin(), 
-            station.getPressureInches(), 
-            station.getPressureMillibars()
-        ) ;
+        int length = formatter.format(reading, line) ;
+        try {
+            out.write(line, 0, length) ;
+        } catch (IOException e) {}  // ignore exceptions
     }
 }
@@ -0,0 +1,75 @@
+/*
+ * Class that keeps count of how punctually a WeatherStation is ticked.
+ * For each tick the caller records its jitter (how late it started
+ * compared with its deadline) and whether it overran (finished after the
+ * next deadline had already passed).
+ *
+ * The counters are written by the one thread ticking the station at any
+ * time and may be read from any thread.
+ */
+public class TickTelemetry {
+    private volatile long ticks = 0 ;
+    private volatile long overruns = 0 ;
+    private volatile long missed = 0 ;          // deadlines skipped by overruns
+    private volatile long totalJitter = 0 ;     // ns
+    private volatile long maxJitter = 0 ;       // ns
+
+    /*
+     * Record one tick that started <jitter> ns after its deadline.
+     */
+    public void recordTick(long jitter) {
+        jitter = Math.max(0, jitter) ;
+        ticks++ ;
+        totalJitter += jitter ;
+        if( jitter > maxJitter ) {
+            maxJitter = jitter ;
+        }
+    }
+
+    /*
+     * Record a tick that ran past the following deadline(s), <skipped>
+     * of which were dropped to get back on schedule.
+     */
+    public void recordOverrun(long skipped) {
+        overruns++ ;
+        missed += skipped ;
+    }
+
+    public long getTicks() {
+        return ticks ;
+    }
+
+    public long getOverruns() {
+        return overruns ;
+    }
+
+    public long getMissedDeadlines() {
+        return missed ;
+    }
+
+    public long getMaxJitterNanos() {
+        return maxJitter ;
+    }
+
+    public double getMeanJitterNanos() {
+        long count = ticks ;
+        return count == 0 ? 0.0 : (double) totalJitter / count ;
+    }
+
+    /*
+     * Start counting again from zero.
+     */
+    public void reset() {
+        ticks = 0 ;
+        overruns = 0 ;
+        missed = 0 ;
+        totalJitter = 0 ;
+        maxJitter = 0 ;
+    }
+
+    public String toString() {
+        return String.format(
+            "ticks=%d overruns=%d missed=%d jitter mean=%.1fus max=%.1fus",
+            ticks, overruns, missed, getMeanJitterNanos() / 1e3, maxJitter / 1e3) ;
+    }
+}
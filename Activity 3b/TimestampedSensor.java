@@ -0,0 +1,21 @@
+/*
+ * Interface for a sensor that knows when each of its readings was taken,
+ * e.g. a ReplaySensor playing back a recorded log. A WeatherStation
+ * built on one stamps its Readings with timestamp() instead of the wall
+ * clock, so a replayed trace keeps its own timeline, and takes its
+ * initial snapshot from peek(), so no reading is used up before the
+ * first tick.
+ */
+public interface TimestampedSensor {
+    /*
+     * Return the time (ms since the epoch) at which the reading last
+     * taken was made.
+     */
+    long timestamp() ;
+
+    /*
+     * Return the next reading, as a Reading with sequence 0, without
+     * taking it.
+     */
+    Reading peek() ;
+}
@@ -0,0 +1,12 @@
+/*
+ * The measurements a TopicListener can subscribe to on a WeatherStation
+ * (see WeatherStation.subscribe). The first three come from the
+ * temperature sensor, the last two from the barometer.
+ */
+public enum Topic {
+    KELVIN,
+    CELSIUS,
+    FAHRENHEIT,
+    PRESSURE_INCHES,
+    PRESSURE_MILLIBARS
+}
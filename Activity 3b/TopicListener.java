@@ -0,0 +1,11 @@
+/*
+ * Interface for an object that wants one measurement of a WeatherStation
+ * rather than every Reading (see WeatherStation.subscribe). It is called
+ * on the ticking thread, only when the value of its topic has changed.
+ */
+public interface TopicListener {
+    /*
+     * Called with the new <value> of <topic>, in that topic's unit.
+     */
+    void update(WeatherStation station, Topic topic, double value) ;
+}
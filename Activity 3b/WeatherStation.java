@@ -9,7 +9,8 @@
  
 /*
  * Class for a simple computer based weather station that reports the current
- * temperature (in Celsius) every second. The station is attached to a
+ * temperature (in Celsius) every second (or at any period set with
+ * setPeriodNanos, down to fractions of a millisecond). The station is attached to a
  * sensor that reports the temperature as a 16-bit number (0 to 65535)
  * representing the Kelvin temperature to the nearest 1/100th of a degree.
  *
@@ -17,93 +18,520 @@
  * which runs the periodic sensing.
  *
  * The class also extends Observable so that it can notify registered
- * objects whenever its state changes. Convenience functions are provided
+ * objects whenever its state changes (Observers may instead be registered
+ * asynchronously, see addAsyncObserver, or with a Deadband that holds back
+ * readings they would not show a change for). A TopicListener may instead
+ * subscribe to the one measurement it shows. Convenience functions are provided
  * to access the temperature in different schemes (Celsius, Kelvin, etc.)
  */
+import java.util.Arrays ;
 import java.util.Observable ;
+import java.util.Observer ;
+import java.util.concurrent.locks.LockSupport ;
 
 public class WeatherStation extends Observable implements Runnable {
 
-    private final KelvinTempSensor sensor ; // Temperature sensor.
-    private final Barometer barometer;
+    private final int id ;                  // Identifies the station.
+    private final TemperatureSensor sensor ; // Temperature sensor.
+    private final PressureSensor barometer;
+    private final TimestampedSensor clock ; // recorded times, or null
 
-    private final long PERIOD = 1000 ;      // 1 sec = 1000 ms
-    private final int KTOC = -27315 ;       // Kelvin to Celsius conversion.
+    private final long PERIOD = 1_000_000_000L ; // 1 sec = 10^9 ns (default)
+    private final long SPIN = 100_000 ;     // spin the last 100 us before a tick
 
-    private int currentReading ;
-    private double currentPressure;
+    private final int DISPATCH_CAPACITY = 1024 ; // async events buffered
+
+    private volatile Reading current ;      // snapshot from the latest tick
+    private long sequence = 0 ;             // number of the latest tick
+
+    private volatile AsyncDispatcher dispatcher ; // created on first use
+
+    private volatile long periodNanos = PERIOD ;  // sampling period
+    private final TickTelemetry telemetry = new TickTelemetry() ;
+    private final StationMetrics metrics = new StationMetrics(this) ;
+    private volatile boolean metricsEnabled = true ;
 
     /*
-     * When a WeatherStation object is created, it in turn creates the sensor
-     * object it will use.
+     * An Observer, with the Deadband it was registered with (Deadband.NONE
+     * if none) and the last Reading it was passed (touched only by the
+     * ticking thread). A synchronous one has the histogram of its update
+     * times; an asynchronous one the dispatcher of its own that the
+     * Readings it lets through are published to.
+     */
+    private static final class Filtered {
+        final Observer observer ;
+        final Deadband deadband ;
+        final LatencyHistogram notify ;     // synchronous only
+        final AsyncDispatcher dispatcher ;  // asynchronous only
+        Reading last ;
+
+        Filtered(Observer observer, Deadband deadband, LatencyHistogram notify) {
+            this(observer, deadband, notify, null) ;
+        }
+
+        Filtered(Observer observer, Deadband deadband, LatencyHistogram notify,
+                 AsyncDispatcher dispatcher) {
+            this.observer = observer ;
+            this.deadband = deadband ;
+            this.notify = notify ;
+            this.dispatcher = dispatcher ;
+        }
+    }
+
+    private volatile Filtered[] filtered = new Filtered[0] ;   // copy on write
+    private volatile Filtered[] asyncFiltered = new Filtered[0] ; // likewise
+    private volatile long suppressed = 0 ;  // updates held back by deadbands
+
+    private static final TopicListener[] NO_LISTENERS = new TopicListener[0] ;
+    private static final Topic[] TOPICS = Topic.values() ;
+
+    // listeners of each topic, by ordinal; copy on write, null if none ever
+    private volatile TopicListener[][] topics ;
+
+    /*
+     * Create a station with id 0.
      */
     public WeatherStation() {
-        sensor = new KelvinTempSensor() ;
-        barometer = new Barometer();
-        currentReading = sensor.reading() ;
-        currentPressure = barometer.pressure();
+        this(0) ;
+    }
+
+    /*
+     * When a WeatherStation object is created, it in turn creates the sensor
+     * object it will use. The id is used to tell stations apart when many
+     * of them share a scheduler, log, etc.
+     */
+    public WeatherStation(int id) {
+        this(id, new KelvinTempSensor(), new Barometer()) ;
+    }
+
+    /*
+     * Create a station that reads the given sensors, e.g. ReplaySensor
+     * for driving the station from a recorded ReadingLog. If the
+     * temperature sensor is a TimestampedSensor, Readings carry its
+     * times and the initial snapshot is peeked rather than taken.
+     */
+    public WeatherStation(int id, TemperatureSensor sensor, PressureSensor barometer) {
+        this.id = id ;
+        this.sensor = sensor ;
+        this.barometer = barometer ;
+        this.clock = (sensor instanceof TimestampedSensor) ? (TimestampedSensor) sensor : null ;
+        current = (clock == null) ? sample() : clock.peek() ;
     }
 
     /*
      * The "run" method called by the enclosing Thread object when started.
-     * Repeatedly sleeps a second, acquires the current temperature from its
-     * sensor, and notifies registered Observers of the change.
+     * Repeatedly waits for the next period, acquires the current temperature
+     * from its sensor, and notifies registered Observers of the change.
+     *
+     * Deadlines are absolute (start + n * period on the System.nanoTime()
+     * clock) so the time taken by a tick never adds up to drift. The thread
+     * parks until just before each deadline and spins the rest of the way.
+     * A tick that runs past the next deadline is counted as an overrun and
+     * the deadlines already missed are skipped rather than run late.
      */
     public void run() {
+        long deadline = System.nanoTime() + periodNanos ;
+
         while( true ) {
+            long wait ;
+            while( (wait = deadline - System.nanoTime()) > SPIN ) {
+                LockSupport.parkNanos(wait - SPIN) ;
+            }
+            while( deadline - System.nanoTime() > 0 ) {
+                Thread.onSpinWait() ;
+            }
+
+            telemetry.recordTick(System.nanoTime() - deadline) ;
             try {
-                Thread.sleep(PERIOD) ;
+                tick() ;
             } catch (Exception e) {}    // ignore exceptions
 
-            /*
-             * Get next reading and notify any Observers.
-             */
-            synchronized(this) {
-                currentReading = sensor.reading() ;
-                currentPressure = barometer.pressure();
+            long period = periodNanos ;
+            long late = System.nanoTime() - (deadline + period) ;
+            if( late >= 0 ) {
+                long skipped = late / period + 1 ;
+                telemetry.recordOverrun(skipped) ;
+                deadline += skipped * period ;
+            }
+            deadline += period ;
+        }
+    }
+
+    /*
+     * Take a single sample: get the next reading and notify any Observers.
+     * Called once per period either by run() or by a StationScheduler that
+     * hosts many stations on a shared pool of threads.
+     */
+    public void tick() {
+        sequence++ ;
+        long start = System.nanoTime() ;
+        Reading reading = sample() ;
+        Reading previous = current ;
+        current = reading ;
+        if( metricsEnabled ) {
+            metrics.sensorRead().record(reading.getNanoTime() - start) ;
+        }
+
+        boolean timed = metricsEnabled ;
+        Filtered[] targets = filtered ;
+        for( int i = 0 ; i < targets.length ; i++ ) {
+            Filtered f = targets[i] ;
+            if( f.deadband == Deadband.NONE || f.deadband.allows(f.last, reading) ) {
+                f.last = reading ;
+                long begin = timed ? System.nanoTime() : 0 ;
+                f.observer.update(this, reading) ;
+                if( timed ) {
+                    f.notify.record(System.nanoTime() - begin) ;
+                }
+            } else {
+                suppressed++ ;
+            }
+        }
+        TopicListener[][] routes = topics ;
+        if( routes != null ) {
+            publishTopics(routes, previous, reading) ;
+        }
+        if( metricsEnabled ) {
+            metrics.notifySync().record(System.nanoTime() - reading.getNanoTime()) ;
+        }
+
+        AsyncDispatcher async = dispatcher ;
+        if( async != null ) {
+            async.publish(reading) ;
+        }
+        targets = asyncFiltered ;
+        for( int i = 0 ; i < targets.length ; i++ ) {
+            Filtered f = targets[i] ;
+            if( f.deadband.allows(f.last, reading) ) {
+                f.last = reading ;
+                f.dispatcher.publish(reading) ;
+            } else {
+                suppressed++ ;
+            }
+        }
+    }
+
+    /*
+     * Pass each changed measurement to the listeners of its topics. A
+     * unit is only converted to if some listener wants it.
+     */
+    private void publishTopics(TopicListener[][] routes, Reading previous, Reading reading) {
+        if( reading.getRawKelvin() != previous.getRawKelvin() ) {
+            TopicListener[] listeners = routes[Topic.KELVIN.ordinal()] ;
+            if( listeners.length > 0 ) {
+                send(listeners, Topic.KELVIN, reading.getKelvin()) ;
+            }
+            listeners = routes[Topic.CELSIUS.ordinal()] ;
+            if( listeners.length > 0 ) {
+                send(listeners, Topic.CELSIUS, reading.getCelsius()) ;
+            }
+            listeners = routes[Topic.FAHRENHEIT.ordinal()] ;
+            if( listeners.length > 0 ) {
+                send(listeners, Topic.FAHRENHEIT, reading.getFahrenheit()) ;
+            }
+        }
+        if( reading.getPressureInches() != previous.getPressureInches() ) {
+            TopicListener[] listeners = routes[Topic.PRESSURE_INCHES.ordinal()] ;
+            if( listeners.length > 0 ) {
+                send(listeners, Topic.PRESSURE_INCHES, reading.getPressureInches()) ;
+            }
+            listeners = routes[Topic.PRESSURE_MILLIBARS.ordinal()] ;
+            if( listeners.length > 0 ) {
+                send(listeners, Topic.PRESSURE_MILLIBARS, reading.getPressureMillibars()) ;
+            }
+        }
+    }
+
+    private void send(TopicListener[] listeners, Topic topic, double value) {
+        for( int i = 0 ; i < listeners.length ; i++ ) {
+            listeners[i].update(this, topic, value) ;
+        }
+    }
+
+    /*
+     * Read both sensors into a new Reading snapshot, stamped with the
+     * sensor's own time if it has one.
+     */
+    private Reading sample() {
+        int kelvin = sensor.reading() ;
+        double pressure = barometer.pressure() ;
+        long time = (clock == null) ? System.currentTimeMillis() : clock.timestamp() ;
+        return new Reading(kelvin, pressure, time, System.nanoTime(), sequence) ;
+    }
+
+    /*
+     * Return the snapshot taken on the latest tick. Observers are passed
+     * the same snapshot as the argument to update(), and should prefer
+     * it, since the station may have ticked again in the meantime.
+     */
+    public Reading getReading() {
+        return current ;
+    }
+
+    /*
+     * Register an Observer that is notified synchronously, on the ticking
+     * thread, of every Reading. The station keeps its Observers itself
+     * (rather than in Observable) so that the time each one's update
+     * takes can be recorded, as notify.<name> in the StationMetrics.
+     */
+    public void addObserver(Observer o) {
+        addObserver(o, Deadband.NONE) ;
+    }
+
+    /*
+     * Register an Observer that is notified synchronously, like those
+     * added with addObserver(), but only of the Readings its Deadband
+     * lets through. The check is made here, on the ticking thread, so an
+     * Observer whose update is held back costs a couple of comparisons.
+     */
+    public synchronized void addObserver(Observer o, Deadband deadband) {
+        if( o == null || deadband == null ) {
+            throw new NullPointerException() ;
+        }
+        Filtered[] old = filtered ;
+        for( Filtered f : old ) {
+            if( f.observer == o ) {
+                return ;
+            }
+        }
+        Filtered[] now = Arrays.copyOf(old, old.length + 1) ;
+        now[old.length] = new Filtered(o, deadband,
+            metrics.observerNotify(metrics.nameFor(o))) ;
+        filtered = now ;
+    }
+
+    /*
+     * Remove an Observer, whether it was added with or without a Deadband.
+     */
+    public synchronized void deleteObserver(Observer o) {
+        Filtered[] old = filtered ;
+        for( int i = 0 ; i < old.length ; i++ ) {
+            if( old[i].observer == o ) {
+                Filtered[] now = Arrays.copyOf(old, old.length - 1) ;
+                System.arraycopy(old, i + 1, now, i, old.length - i - 1) ;
+                filtered = now ;
+                return ;
+            }
+        }
+    }
+
+    public synchronized void deleteObservers() {
+        filtered = new Filtered[0] ;
+    }
+
+    public synchronized int countObservers() {
+        return filtered.length ;
+    }
+
+    /*
+     * Subscribe a listener to one measurement. From the next tick on it
+     * is called, on the ticking thread, whenever that measurement
+     * changes; the station does not convert to units nobody listens to.
+     */
+    public synchronized void subscribe(Topic topic, TopicListener listener) {
+        if( listener == null ) {
+            throw new NullPointerException() ;
+        }
+        TopicListener[][] routes = (topics == null) ? new TopicListener[TOPICS.length][]
+                                                    : topics.clone() ;
+        for( int t = 0 ; t < routes.length ; t++ ) {
+            if( routes[t] == null ) {
+                routes[t] = NO_LISTENERS ;
             }
-            setChanged() ;
-            notifyObservers() ;
         }
+        TopicListener[] old = routes[topic.ordinal()] ;
+        for( TopicListener l : old ) {
+            if( l == listener ) {
+                return ;
+            }
+        }
+        TopicListener[] now = Arrays.copyOf(old, old.length + 1) ;
+        now[old.length] = listener ;
+        routes[topic.ordinal()] = now ;
+        topics = routes ;
+    }
+
+    /*
+     * Remove a listener from a topic it was subscribed to.
+     */
+    public synchronized void unsubscribe(Topic topic, TopicListener listener) {
+        TopicListener[][] routes = topics ;
+        if( routes == null ) {
+            return ;
+        }
+        TopicListener[] old = routes[topic.ordinal()] ;
+        for( int i = 0 ; i < old.length ; i++ ) {
+            if( old[i] == listener ) {
+                TopicListener[] now = Arrays.copyOf(old, old.length - 1) ;
+                System.arraycopy(old, i + 1, now, i, old.length - i - 1) ;
+                routes = routes.clone() ;
+                routes[topic.ordinal()] = now ;
+                topics = routes ;
+                return ;
+            }
+        }
+    }
+
+    /*
+     * Return the number of updates Deadbands have held back.
+     */
+    public long getSuppressedCount() {
+        return suppressed ;
+    }
+
+    /*
+     * Register an Observer that is notified off the ticking thread (on a
+     * pool shared by all stations), so a slow Observer never delays the
+     * next sensor reading. The update arguments are the same as for
+     * Observers added with addObserver().
+     */
+    public synchronized void addAsyncObserver(Observer o) {
+        if( dispatcher == null ) {
+            dispatcher = new AsyncDispatcher(this, DISPATCH_CAPACITY, metrics) ;
+        }
+        dispatcher.subscribe(o) ;
+    }
+
+    /*
+     * Register an Observer that is notified asynchronously, like those
+     * added with addAsyncObserver(), but only of the Readings its Deadband
+     * lets through. The check is made on the ticking thread before the
+     * Reading is published, so a Reading that is held back never wakes a
+     * thread of the pool.
+     */
+    public synchronized void addAsyncObserver(Observer o, Deadband deadband) {
+        if( o == null || deadband == null ) {
+            throw new NullPointerException() ;
+        }
+        if( deadband == Deadband.NONE ) {
+            addAsyncObserver(o) ;
+            return ;
+        }
+        Filtered[] old = asyncFiltered ;
+        for( Filtered f : old ) {
+            if( f.observer == o ) {
+                return ;
+            }
+        }
+        AsyncDispatcher own = new AsyncDispatcher(this, DISPATCH_CAPACITY, metrics) ;
+        own.subscribe(o) ;
+        Filtered[] now = Arrays.copyOf(old, old.length + 1) ;
+        now[old.length] = new Filtered(o, deadband, null, own) ;
+        asyncFiltered = now ;
+    }
+
+    /*
+     * Remove an Observer registered with addAsyncObserver(), whether
+     * with or without a Deadband.
+     */
+    public synchronized void deleteAsyncObserver(Observer o) {
+        if( dispatcher != null ) {
+            dispatcher.unsubscribe(o) ;
+        }
+        Filtered[] old = asyncFiltered ;
+        for( int i = 0 ; i < old.length ; i++ ) {
+            if( old[i].observer == o ) {
+                Filtered[] now = Arrays.copyOf(old, old.length - 1) ;
+                System.arraycopy(old, i + 1, now, i, old.length - i - 1) ;
+                asyncFiltered = now ;
+                old[i].dispatcher.unsubscribe(o) ;
+                return ;
+            }
+        }
+    }
+
+    /*
+     * Return the id of this station.
+     */
+    public int getId() {
+        return id ;
+    }
+
+    /*
+     * Return the sampling period in milliseconds.
+     */
+    public long getPeriod() {
+        return periodNanos / 1_000_000 ;
+    }
+
+    /*
+     * Return the sampling period in nanoseconds.
+     */
+    public long getPeriodNanos() {
+        return periodNanos ;
+    }
+
+    /*
+     * Set the sampling period in nanoseconds. A running run() loop picks
+     * it up from the next tick; a StationScheduler when the station is
+     * next started.
+     */
+    public void setPeriodNanos(long nanos) {
+        if( nanos <= 0 ) {
+            throw new IllegalArgumentException("period must be > 0") ;
+        }
+        periodNanos = nanos ;
+    }
+
+    /*
+     * Return the latency histograms of this station.
+     */
+    public StationMetrics getMetrics() {
+        return metrics ;
+    }
+
+    /*
+     * Turn recording of the sensor and synchronous notify latencies on
+     * (the default) or off, e.g. for large simulated fleets.
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        metricsEnabled = enabled ;
+    }
+
+    /*
+     * Return the counters of tick jitter and overruns.
+     */
+    public TickTelemetry getTelemetry() {
+        return telemetry ;
     }
 
     /*
      * Return the current reading in degrees celsius as a
      * double precision number.
      */
-    public synchronized double getCelsius() {
-        return (currentReading + KTOC) / 100.0 ;
+    public double getCelsius() {
+        return current.getCelsius() ;
     }
 
     /*
      * Return the current reading in degrees Kelvin as a
      * double precision number.
      */
-    public synchronized double getKelvin() {
-        return currentReading / 100.0 ;
+    public double getKelvin() {
+        return current.getKelvin() ;
     }
 
     /*
      * Return the current reading in degrees Fahrenheit as a
      * double precision number.
      */
-    public synchronized double getFahrenheit() {
-        return (getCelsius() * 1.8) + 32.0;
+    public double getFahrenheit() {
+        return current.getFahrenheit() ;
     }
 
     /*
      * Return current pressure reading in inches of Mercury as a
      * double precision number.
      */
-    public synchronized double getPressureInches() {
-        return currentPressure;
+    public double getPressureInches() {
+        return current.getPressureInches() ;
     }
 
     /*
      * Return current pressure reading in millibars as a
      * double precision number.
      */
-    public synchronized double getPressureMillibars() {
-        return currentPressure * 33.8637526;
+    public double getPressureMillibars() {
+        return current.getPressureMillibars() ;
     }
 }